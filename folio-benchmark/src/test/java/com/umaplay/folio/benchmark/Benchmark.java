@@ -0,0 +1,28 @@
+package com.umaplay.folio.benchmark;
+
+/**
+ * A single operation to measure. Only run is timed, setUp, reset and tearDown are not.
+ */
+abstract class Benchmark {
+
+    void setUp() {
+    }
+
+    abstract void run();
+
+    /**
+     * Brings the state back to what it was before run
+     */
+    void reset() {
+    }
+
+    void tearDown() {
+    }
+
+    /**
+     * @return the size of what the last run produced in bytes or -1 if it does not apply
+     */
+    long payloadBytes() {
+        return -1;
+    }
+}
@@ -0,0 +1,69 @@
+package com.umaplay.folio.benchmark;
+
+import android.content.Context;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.EditText;
+import android.widget.FrameLayout;
+
+import com.umaplay.folio.BasePageFactory;
+import com.umaplay.folio.Page;
+import com.umaplay.folio.PageManager;
+
+/**
+ * A Page with a small View tree whose state has to be saved and optionally a nested PageManager
+ */
+public class BenchmarkPage extends Page {
+
+    private static final int FIELDS = 16;
+    private static final int NESTED_CONTAINER_ID = 0x7f0f0000;
+
+    private final boolean mNested;
+
+    BenchmarkPage(boolean nested) {
+        mNested = nested;
+    }
+
+    @Override
+    public View onCreateView(Context context, ViewGroup container) {
+        FrameLayout root = new FrameLayout(context);
+        for (int i = 0; i < FIELDS; i++) {
+            EditText field = new EditText(context);
+            field.setId(i + 1);
+            field.setText("field " + i);
+            root.addView(field);
+        }
+
+        if (mNested) {
+            FrameLayout nestedContainer = new FrameLayout(context);
+            nestedContainer.setId(NESTED_CONTAINER_ID);
+            root.addView(nestedContainer);
+        }
+
+        return root;
+    }
+
+    @Override
+    public void onViewMounted(View view) {
+        super.onViewMounted(view);
+
+        if (mNested) {
+            PageManager nested = getNestedPageManager(
+                    (ViewGroup) view.findViewById(NESTED_CONTAINER_ID));
+            if (nested.size() == 0) nested.goTo(new Factory(false));
+        }
+    }
+
+    public static class Factory extends BasePageFactory {
+        private final boolean mNested;
+
+        public Factory(boolean nested) {
+            mNested = nested;
+        }
+
+        @Override
+        public Page getPage() {
+            return new BenchmarkPage(mNested);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.umaplay.folio.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects benchmark results and writes them as a JSON array, one result per line so two reports
+ * can be diffed between releases
+ */
+final class BenchmarkReport {
+
+    static final String REPORT_PROPERTY = "folio.benchmark.report";
+
+    private final List<BenchmarkRunner.Result> mResults = new ArrayList<>();
+
+    void add(BenchmarkRunner.Result result) {
+        mResults.add(result);
+    }
+
+    String toJson() {
+        StringBuilder builder = new StringBuilder("[\n");
+        for (int i = 0; i < mResults.size(); i++) {
+            builder.append("  ").append(mResults.get(i).toJson());
+            if (i < mResults.size() - 1) builder.append(',');
+            builder.append('\n');
+        }
+
+        return builder.append("]\n").toString();
+    }
+
+    void write() throws IOException {
+        String json = toJson();
+        System.out.print(json);
+
+        String path = System.getProperty(REPORT_PROPERTY);
+        if (path == null) return;
+
+        File file = new File(path);
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs())
+            throw new IOException("Could not create " + parent);
+
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(json);
+        }
+        finally {
+            writer.close();
+        }
+    }
+}
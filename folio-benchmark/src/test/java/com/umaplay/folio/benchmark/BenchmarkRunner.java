@@ -0,0 +1,98 @@
+package com.umaplay.folio.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+
+/**
+ * A minimal JMH style harness: warm up iterations followed by measured iterations, each timed on
+ * its own so the untimed reset can bring the stack back to the measured depth.
+ */
+final class BenchmarkRunner {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    static Result run(String name, int depth, boolean nested, Benchmark benchmark) {
+        int iterations = iterationsFor(depth);
+        int warmup = Math.max(iterations / 2, 1);
+
+        benchmark.setUp();
+        try {
+            for (int i = 0; i < warmup; i++) {
+                benchmark.run();
+                benchmark.reset();
+            }
+
+            long nanos = 0;
+            long allocated = 0;
+            for (int i = 0; i < iterations; i++) {
+                long allocatedStart = allocatedBytes();
+                long start = System.nanoTime();
+
+                benchmark.run();
+
+                nanos += System.nanoTime() - start;
+                allocated += allocatedBytes() - allocatedStart;
+
+                benchmark.reset();
+            }
+
+            return new Result(name, depth, nested, iterations, nanos, allocated,
+                    benchmark.payloadBytes());
+        }
+        finally {
+            benchmark.tearDown();
+        }
+    }
+
+    /**
+     * Deep stacks are expensive to rebuild so they get fewer iterations
+     */
+    private static int iterationsFor(int depth) {
+        return Math.max(5, Math.min(200, 2000 / depth));
+    }
+
+    private static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) THREADS)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        return 0;
+    }
+
+    static final class Result {
+        final String name;
+        final int depth;
+        final boolean nested;
+        final int iterations;
+        final double nanosPerOp;
+        final double opsPerSecond;
+        final long allocatedBytesPerOp;
+        final long payloadBytes;
+
+        Result(String name, int depth, boolean nested, int iterations, long nanos,
+               long allocated, long payloadBytes) {
+            this.name = name;
+            this.depth = depth;
+            this.nested = nested;
+            this.iterations = iterations;
+            this.nanosPerOp = (double) nanos / iterations;
+            this.opsPerSecond = nanos > 0 ? iterations * 1e9 / nanos : 0;
+            this.allocatedBytesPerOp = allocated / iterations;
+            this.payloadBytes = payloadBytes;
+        }
+
+        String toJson() {
+            return String.format(Locale.US, "{\"benchmark\":\"%s\",\"depth\":%d,\"nested\":%b,"
+                            + "\"iterations\":%d,\"nsPerOp\":%.1f,\"opsPerSec\":%.2f,"
+                            + "\"allocBytesPerOp\":%d,\"bundleBytes\":%d}",
+                    name, depth, nested, iterations, nanosPerOp, opsPerSecond,
+                    allocatedBytesPerOp, payloadBytes);
+        }
+    }
+
+    private BenchmarkRunner() {
+        throw new AssertionError("No instances");
+    }
+}
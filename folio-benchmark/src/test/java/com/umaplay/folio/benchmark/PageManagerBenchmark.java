@@ -0,0 +1,230 @@
+package com.umaplay.folio.benchmark;
+
+import android.os.Bundle;
+import android.os.Parcel;
+import android.widget.FrameLayout;
+
+import com.squareup.leakcanary.RefWatcher;
+import com.umaplay.folio.PageManager;
+import com.umaplay.folio.PageStackDelegate;
+import com.umaplay.folio.animator.NoAnimationFactory;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+/**
+ * Measures the PageManager navigation and state operations at several stack depths, with and
+ * without nested PageManagers. Run with {@code ./gradlew :folio-benchmark:benchmark}, the report
+ * is written to build/reports/folio-benchmark.json.
+ *
+ * All transitions use NoAnimationFactory so they complete synchronously.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class PageManagerBenchmark {
+
+    private static final int[] DEPTHS = {1, 10, 100, 1000};
+    private static final BenchmarkReport REPORT = new BenchmarkReport();
+
+    private static final PageStackDelegate DELEGATE = new PageStackDelegate() {
+        @Override
+        public void onStackEmpty() {
+        }
+    };
+
+    @AfterClass
+    public static void writeReport() throws Exception {
+        REPORT.write();
+    }
+
+    @Test
+    public void goTo() {
+        measure("goTo", new StackBenchmark() {
+            @Override
+            void run() {
+                mManager.goTo(new BenchmarkPage.Factory(mNested), new NoAnimationFactory());
+            }
+
+            @Override
+            void reset() {
+                mManager.goBack(false);
+            }
+        });
+    }
+
+    @Test
+    public void goBack() {
+        measure("goBack", new StackBenchmark() {
+            @Override
+            void setUp() {
+                super.setUp();
+                fill(1);//goBack pops back to depth instead of reaching the delegate at depth 1
+            }
+
+            @Override
+            void run() {
+                mManager.goBack(false);
+            }
+
+            @Override
+            void reset() {
+                mManager.goTo(new BenchmarkPage.Factory(mNested), new NoAnimationFactory());
+            }
+        });
+    }
+
+    @Test
+    public void replaceAll() {
+        measure("replaceAll", new StackBenchmark() {
+            @Override
+            void run() {
+                mManager.replaceAll(new BenchmarkPage.Factory(mNested), new NoAnimationFactory());
+            }
+
+            @Override
+            void reset() {
+                fill(mDepth - 1);
+            }
+        });
+    }
+
+    @Test
+    public void gotoFirst() {
+        measure("gotoFirst", new StackBenchmark() {
+            @Override
+            void run() {
+                mManager.gotoFirst();
+            }
+
+            @Override
+            void reset() {
+                fill(mDepth - 1);
+            }
+        });
+    }
+
+    @Test
+    public void onSaveInstanceState() {
+        measure("onSaveInstanceState", new SaveBenchmark() {
+            @Override
+            void setUp() {
+                super.setUp();
+                reset();
+            }
+
+            @Override
+            void reset() {
+                //only the top Page is saved here, the covered ones were saved when unmounted
+                mManager.peek().markStateDirty();
+            }
+        });
+    }
+
+    @Test
+    public void onSaveInstanceStateClean() {
+        measure("onSaveInstanceStateClean", new SaveBenchmark() {
+            @Override
+            void setUp() {
+                super.setUp();
+                run();//the top Page is clean from now on and its state is reused
+            }
+        });
+    }
+
+    @Test
+    public void onRestoreInstanceState() {
+        measure("onRestoreInstanceState", new StackBenchmark() {
+            private Bundle mState;
+
+            @Override
+            void setUp() {
+                super.setUp();
+                mState = new Bundle();
+                mManager.onSaveInstanceState(mState);
+            }
+
+            @Override
+            void run() {
+                //the constructor calls _onRestoreInstanceState
+                new PageManager(new FrameLayout(RuntimeEnvironment.application), DELEGATE,
+                        RefWatcher.DISABLED, mState);
+            }
+
+            @Override
+            long payloadBytes() {
+                return sizeOf(mState);
+            }
+        });
+    }
+
+    private static void measure(String name, StackBenchmark benchmark) {
+        for (boolean nested : new boolean[]{false, true}) {
+            for (int depth : DEPTHS) {
+                benchmark.mDepth = depth;
+                benchmark.mNested = nested;
+                REPORT.add(BenchmarkRunner.run(name, depth, nested, benchmark));
+            }
+        }
+    }
+
+    private static long sizeOf(Bundle bundle) {
+        if (bundle == null) return -1;
+
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.writeBundle(bundle);
+            return parcel.marshall().length;
+        }
+        finally {
+            parcel.recycle();
+        }
+    }
+
+    /**
+     * Saves the stack, subclasses decide whether the top Page is dirty
+     */
+    private abstract static class SaveBenchmark extends StackBenchmark {
+        private Bundle mState;
+
+        @Override
+        void run() {
+            mState = new Bundle();
+            mManager.onSaveInstanceState(mState);
+        }
+
+        @Override
+        long payloadBytes() {
+            return sizeOf(mState);
+        }
+    }
+
+    /**
+     * A benchmark which starts from a stack of mDepth Pages
+     */
+    private abstract static class StackBenchmark extends Benchmark {
+        int mDepth;
+        boolean mNested;
+        PageManager mManager;
+
+        @Override
+        void setUp() {
+            mManager = new PageManager(new FrameLayout(RuntimeEnvironment.application), DELEGATE,
+                    RefWatcher.DISABLED, null);
+            fill(mDepth);
+        }
+
+        @Override
+        void tearDown() {
+            mManager = null;
+        }
+
+        void fill(int count) {
+            for (int i = 0; i < count; i++)
+                mManager.goTo(new BenchmarkPage.Factory(mNested), new NoAnimationFactory());
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.umaplay.folio;
+
+import android.os.Bundle;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+import static com.umaplay.folio.Preconditions.checkNotNull;
+
+/**
+ * The default PageStateStore which keeps every Page state in memory and saves all of them into the
+ * host's Bundle
+ */
+public class BundlePageStateStore implements PageStateStore {
+
+    private static final String STATE_TAG = "PageManager.STATE_TAG";
+
+    private Bundle mStates = new Bundle();
+    private boolean mShared;//mStates was handed to the host's Bundle
+
+    @Override
+    public void putState(String pageId, Bundle state) {
+        unshare();
+        mStates.putBundle(pageId, state);
+    }
+
+    @Override
+    public Bundle getState(String pageId) {
+        return mStates.getBundle(pageId);
+    }
+
+    @Override
+    public void removeState(String pageId) {
+        if (!mStates.containsKey(pageId)) return;
+
+        unshare();
+        mStates.remove(pageId);
+    }
+
+    /**
+     * The states are copied on the next change instead of on every save, so saving again while
+     * nothing changed costs nothing
+     */
+    @Override
+    public void onSaveInstanceState(Bundle outState) {
+        outState.putBundle(STATE_TAG, mStates);
+        mShared = true;
+    }
+
+    @Override
+    public void onRestoreInstanceState(Bundle savedState) {
+        mStates = savedState.getBundle(STATE_TAG);
+        checkNotNull(mStates, "Bundle doesn't contain PageManager state.");
+        mShared = true;//it belongs to the saved Bundle
+    }
+
+    @Override
+    public void retainStates(Collection<String> pageIds) {
+        for (String pageId : new ArrayList<>(mStates.keySet())) {
+            if (!pageIds.contains(pageId)) removeState(pageId);
+        }
+    }
+
+    @Override
+    public long onTrimMemory(int level) {
+        return 0;//every state is needed for the host's Bundle so nothing can be released
+    }
+
+    private void unshare() {
+        if (!mShared) return;
+
+        mStates = new Bundle(mStates);
+        mShared = false;
+    }
+}
@@ -0,0 +1,15 @@
+package com.umaplay.folio;
+
+import android.os.Parcel;
+
+/**
+ * Writes and reads the state of a PageFactory or PageAnimatorFactory class to a Parcel.
+ * Registering a codec with {@link FactoryCodecs#register} lets the PageManager save the stack in a
+ * compact binary form instead of using Java serialization.
+ * The id and PageAnimatorFactory of a PageFactory are saved by the PageManager, a codec only has to
+ * handle the fields of its own class.
+ */
+public interface FactoryCodec<T> {
+    void write(T factory, Parcel out);
+    T read(Parcel in);
+}
@@ -0,0 +1,76 @@
+package com.umaplay.folio;
+
+import android.os.Parcel;
+
+import com.umaplay.folio.animator.NoAnimationFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.umaplay.folio.Preconditions.checkNotNull;
+
+/**
+ * Registry of the FactoryCodecs used when saving the PageManager stack.
+ * Factories without a codec fall back to Java serialization.
+ */
+public final class FactoryCodecs {
+
+    private static final Map<Class<?>, FactoryCodec<?>> sCodecs = new HashMap<>();
+
+    static {
+        register(NoAnimationFactory.class, stateless(NoAnimationFactory.class));
+    }
+
+    /**
+     * Registers the codec for the exact class provided. Subclasses need their own codec.
+     *
+     * @param type  the factory class
+     * @param codec the codec responsible for the factory class
+     */
+    public static <T> void register(Class<T> type, FactoryCodec<T> codec) {
+        checkNotNull(type, "type == null");
+        checkNotNull(codec, "codec == null");
+
+        synchronized (sCodecs) {
+            sCodecs.put(type, codec);
+        }
+    }
+
+    /**
+     * Creates a codec for factory classes without any state of their own.
+     * Nothing is written for them, they are recreated using their public no-arg constructor.
+     *
+     * @param type the factory class
+     */
+    public static <T> FactoryCodec<T> stateless(final Class<T> type) {
+        checkNotNull(type, "type == null");
+
+        return new FactoryCodec<T>() {
+            @Override
+            public void write(T factory, Parcel out) {
+                //nothing to write
+            }
+
+            @Override
+            public T read(Parcel in) {
+                try {
+                    return type.newInstance();
+                }
+                catch (InstantiationException | IllegalAccessException e) {
+                    throw new IllegalStateException("Cannot instantiate " + type.getName(), e);
+                }
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> FactoryCodec<T> get(Class<T> type) {
+        synchronized (sCodecs) {
+            return (FactoryCodec<T>) sCodecs.get(type);
+        }
+    }
+
+    private FactoryCodecs() {
+        throw new AssertionError("No instances");
+    }
+}
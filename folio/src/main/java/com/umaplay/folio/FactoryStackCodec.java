@@ -0,0 +1,153 @@
+package com.umaplay.folio;
+
+import android.os.Parcel;
+
+import com.umaplay.folio.animator.PageAnimatorFactory;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes a stack of PageFactories into a compact Parcel using the registered FactoryCodecs.
+ * Class names are written once and referenced by index afterwards. Factories without a codec are
+ * written using Java serialization.
+ */
+final class FactoryStackCodec {
+
+    private static final int VERSION = 1;
+    private static final int TAG_NULL = 0;
+    private static final int TAG_CODEC = 1;
+    private static final int TAG_SERIALIZABLE = 2;
+
+    /**
+     * @return true if at least one of the factories has a registered codec
+     */
+    static boolean canEncode(List<PageFactory> factories) {
+        for (PageFactory factory : factories) {
+            if (FactoryCodecs.get(factory.getClass()) != null) return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @param sizes receives the number of bytes written for each factory, in the order of
+     *              factories. The same factory may be on the stack more than once.
+     */
+    static byte[] encode(List<PageFactory> factories, int[] sizes) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            Map<Class<?>, Integer> classes = new HashMap<>();
+
+            parcel.writeInt(VERSION);
+            parcel.writeInt(factories.size());
+            for (int i = 0; i < factories.size(); i++) {
+                PageFactory factory = factories.get(i);
+                int start = parcel.dataPosition();
+
+                writeObject(parcel, factory, classes);
+                parcel.writeString(factory.getId());
+                writeObject(parcel, factory.getAnimatorFactory(), classes);
+
+                sizes[i] = parcel.dataPosition() - start;
+            }
+
+            return parcel.marshall();
+        }
+        finally {
+            parcel.recycle();
+        }
+    }
+
+    static List<PageFactory> decode(byte[] data) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.unmarshall(data, 0, data.length);
+            parcel.setDataPosition(0);
+
+            int version = parcel.readInt();
+            if (version != VERSION)
+                throw new IllegalStateException("Unknown PageManager state version " + version);
+
+            List<Class<?>> classes = new ArrayList<>();
+            int size = parcel.readInt();
+            List<PageFactory> factories = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                PageFactory factory = (PageFactory) readObject(parcel, classes);
+                factory.setId(parcel.readString());
+                factory.setAnimatorFactory((PageAnimatorFactory) readObject(parcel, classes));
+
+                factories.add(factory);
+            }
+
+            return factories;
+        }
+        finally {
+            parcel.recycle();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void writeObject(Parcel parcel, Serializable object,
+                                    Map<Class<?>, Integer> classes) {
+        if (object == null) {
+            parcel.writeInt(TAG_NULL);
+            return;
+        }
+
+        FactoryCodec<Object> codec = (FactoryCodec<Object>) FactoryCodecs.get((Class) object.getClass());
+        if (codec == null) {
+            parcel.writeInt(TAG_SERIALIZABLE);
+            parcel.writeSerializable(object);
+            return;
+        }
+
+        parcel.writeInt(TAG_CODEC);
+        Integer index = classes.get(object.getClass());
+        if (index == null) {
+            //first occurrence, the index is followed by the name
+            parcel.writeInt(classes.size());
+            parcel.writeString(object.getClass().getName());
+            classes.put(object.getClass(), classes.size());
+        }
+        else {
+            parcel.writeInt(index);
+        }
+
+        codec.write(object, parcel);
+    }
+
+    private static Object readObject(Parcel parcel, List<Class<?>> classes) {
+        int tag = parcel.readInt();
+        if (tag == TAG_NULL) return null;
+        if (tag == TAG_SERIALIZABLE) return parcel.readSerializable();
+
+        int index = parcel.readInt();
+        if (index == classes.size()) {
+            classes.add(loadClass(parcel.readString()));
+        }
+
+        Class<?> type = classes.get(index);
+        FactoryCodec<?> codec = FactoryCodecs.get(type);
+        if (codec == null)
+            throw new IllegalStateException("No FactoryCodec registered for " + type.getName());
+
+        return codec.read(parcel);
+    }
+
+    private static Class<?> loadClass(String name) {
+        try {
+            return Class.forName(name, true, FactoryStackCodec.class.getClassLoader());
+        }
+        catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Cannot load factory class " + name, e);
+        }
+    }
+
+    private FactoryStackCodec() {
+        throw new AssertionError("No instances");
+    }
+}
@@ -0,0 +1,470 @@
+package com.umaplay.folio;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Parcel;
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import static com.umaplay.folio.Preconditions.checkNotNull;
+
+/**
+ * A PageStateStore which spills Page states to app-private files when the PageManager saves its
+ * state, leaving only the Page ids in the host's Bundle. Files are deleted once their Page is
+ * popped, or on the next start without a saved state, never when the host is only destroyed.
+ *
+ * Every state referenced by a saved Bundle is on disk once onSaveInstanceState returns, so the
+ * process may be killed right after. Writes run on a background thread and onSaveInstanceState
+ * only waits for the ones which are still pending, running them on the calling thread rather
+ * than waiting for a background priority thread to get to them. Writes started by onTrimMemory
+ * carry no such guarantee until the next save, the states are kept in memory until they land.
+ *
+ * A restored store reads the states back on a background thread right away, a state which is
+ * needed before it was read is read on the calling thread. States dropped by onTrimMemory are
+ * read back on the calling thread when their Page is mounted again.
+ *
+ * A state may hold any Parcelable, which has no stable format, so the files contain the
+ * marshalled Parcel of the state. Like the host's own saved state they are only read back by the
+ * saved state which references them and by the same build of the platform, a file written by
+ * another build is ignored.
+ *
+ * Each store needs a directory of its own since files of Pages which are not on the stack are
+ * deleted.
+ */
+public class FilePageStateStore implements PageStateStore {
+
+    private static final String TAG = "Folio.FilePageStateStore";
+    private static final String TOKENS_TAG = "FilePageStateStore.TOKENS_TAG";
+    private static final String FILE_SUFFIX = ".state";
+    private static final int MAGIC = 0x466f6c53;
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * File operations of every store run one at a time, so a write and a later delete of the same
+     * file cannot be reordered, even across a host which is recreated
+     */
+    private static final SerialExecutor sFileExecutor = new SerialExecutor();
+    /**
+     * Data of the files which are still being written. A recreated host reads a state from here
+     * while the write started by the previous one has not finished yet.
+     */
+    private static final Map<File, byte[]> sPendingWrites = new HashMap<>();
+
+    private final File mDirectory;
+    private final ClassLoader mClassLoader;
+    private final Map<String, Bundle> mStates = new HashMap<>();
+    private final Set<String> mUnwritten = new HashSet<>();
+    private final Set<String> mWritten = new HashSet<>();
+    /**
+     * Data of the restored states which were read by the prefetch and not taken yet
+     */
+    private final Map<String, byte[]> mPrefetched = new HashMap<>();
+    private boolean mPrefetching;//guarded by mPrefetched
+
+    /**
+     * @param context any Context of the app
+     * @param name    a name which is unique to this store, typically one per host
+     */
+    public FilePageStateStore(Context context, String name) {
+        this(new File(new File(context.getFilesDir(), "folio-state"), name),
+                context.getClassLoader());
+    }
+
+    public FilePageStateStore(File directory, ClassLoader classLoader) {
+        checkNotNull(directory, "directory == null");
+
+        mDirectory = directory;
+        mClassLoader = classLoader;
+    }
+
+    @Override
+    public void putState(String pageId, Bundle state) {
+        mStates.put(pageId, state);
+        mUnwritten.add(pageId);
+    }
+
+    @Override
+    public Bundle getState(String pageId) {
+        Bundle state = mStates.get(pageId);
+        if (state == null && mWritten.contains(pageId)) {
+            state = read(pageId);
+            if (state != null) mStates.put(pageId, state);
+        }
+
+        return state;
+    }
+
+    @Override
+    public void removeState(String pageId) {
+        mStates.remove(pageId);
+        mUnwritten.remove(pageId);
+        takePrefetched(pageId);
+        if (mWritten.remove(pageId)) {
+            delete(getFile(pageId));
+        }
+    }
+
+    /**
+     * Writes the states which changed since the last save and returns once every pending write
+     * is on disk. They are kept in memory as well, until the store is trimmed.
+     */
+    @Override
+    public void onSaveInstanceState(Bundle outState) {
+        for (String pageId : mUnwritten) {
+            write(pageId, mStates.get(pageId));
+            mWritten.add(pageId);
+        }
+        mUnwritten.clear();
+        sFileExecutor.flush();
+
+        outState.putStringArrayList(TOKENS_TAG, new ArrayList<>(mWritten));
+    }
+
+    /**
+     * Starts reading the restored states on a background thread
+     */
+    @Override
+    public void onRestoreInstanceState(Bundle savedState) {
+        ArrayList<String> tokens = savedState.getStringArrayList(TOKENS_TAG);
+        checkNotNull(tokens, "Bundle doesn't contain PageManager state.");
+
+        mWritten.addAll(tokens);
+        prefetch(tokens);
+    }
+
+    @Override
+    public void retainStates(Collection<String> pageIds) {
+        synchronized (mPrefetched) {
+            mPrefetched.keySet().retainAll(pageIds);
+        }
+        mStates.keySet().retainAll(pageIds);
+        mUnwritten.retainAll(pageIds);
+        mWritten.retainAll(pageIds);
+
+        final Set<String> written = new HashSet<>(mWritten);
+        sFileExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                File[] files = mDirectory.listFiles();
+                if (files == null) return;
+
+                for (File file : files) {
+                    String name = file.getName();
+                    if (!name.endsWith(FILE_SUFFIX)) continue;
+
+                    String pageId = name.substring(0, name.length() - FILE_SUFFIX.length());
+                    if (!written.contains(pageId)) file.delete();
+                }
+            }
+        });
+    }
+
+    /**
+     * Starts writing the states which have not been written yet and drops every state from
+     * memory. They are read back when their Page is mounted again.
+     */
+    @Override
+    public long onTrimMemory(int level) {
+        long released = 0;
+        for (Map.Entry<String, Bundle> entry : mStates.entrySet()) {
+            String pageId = entry.getKey();
+            if (mUnwritten.remove(pageId)) {
+                released += write(pageId, entry.getValue());
+                mWritten.add(pageId);
+            }
+            else {
+                released += sizeOf(pageId);
+            }
+        }
+        mStates.clear();
+        synchronized (mPrefetched) {
+            mPrefetching = false;
+            for (byte[] data : mPrefetched.values()) released += data.length;
+            mPrefetched.clear();
+        }
+
+        return released;
+    }
+
+    private File getFile(String pageId) {
+        return new File(mDirectory, pageId + FILE_SUFFIX);
+    }
+
+    /**
+     * Marshals the state and writes it on the file executor
+     *
+     * @return the number of bytes which are written
+     */
+    private long write(String pageId, Bundle state) {
+        final File file = getFile(pageId);
+        final byte[] data = marshall(state);
+        synchronized (sPendingWrites) {
+            sPendingWrites.put(file, data);
+        }
+
+        sFileExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (sPendingWrites) {
+                    if (sPendingWrites.get(file) != data) return;//deleted or written again since
+                }
+
+                writeFile(file, data);
+                synchronized (sPendingWrites) {
+                    if (sPendingWrites.get(file) == data) sPendingWrites.remove(file);
+                }
+            }
+        });
+
+        return data.length;
+    }
+
+    private static void delete(final File file) {
+        synchronized (sPendingWrites) {
+            sPendingWrites.remove(file);
+        }
+
+        sFileExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                file.delete();
+            }
+        });
+    }
+
+    private long sizeOf(String pageId) {
+        File file = getFile(pageId);
+        synchronized (sPendingWrites) {
+            byte[] data = sPendingWrites.get(file);
+            if (data != null) return data.length;
+        }
+
+        return file.length();
+    }
+
+    /**
+     * Reads the files of the states on a background thread. Neither the order of the file
+     * executor nor its thread is needed: a state which is still being written is taken from
+     * sPendingWrites and a file which is written while it is read fails the length check, both
+     * are left to read.
+     */
+    private void prefetch(final Collection<String> pageIds) {
+        synchronized (mPrefetched) {
+            mPrefetching = true;
+        }
+
+        FolioExecutors.background().execute(new Runnable() {
+            @Override
+            public void run() {
+                for (String pageId : pageIds) {
+                    File file = getFile(pageId);
+                    synchronized (sPendingWrites) {
+                        if (sPendingWrites.containsKey(file)) continue;
+                    }
+
+                    byte[] data = readFile(file);
+                    synchronized (mPrefetched) {
+                        if (!mPrefetching) return;//trimmed since
+                        if (data != null) mPrefetched.put(pageId, data);
+                    }
+                }
+            }
+        });
+    }
+
+    private byte[] takePrefetched(String pageId) {
+        synchronized (mPrefetched) {
+            return mPrefetched.remove(pageId);
+        }
+    }
+
+    private Bundle read(String pageId) {
+        File file = getFile(pageId);
+        byte[] data;
+        synchronized (sPendingWrites) {
+            data = sPendingWrites.get(file);
+        }
+        if (data == null) data = takePrefetched(pageId);
+        if (data == null) data = readFile(file);
+        if (data == null) return null;
+
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.unmarshall(data, 0, data.length);
+            parcel.setDataPosition(0);
+
+            return parcel.readBundle(mClassLoader);
+        }
+        catch (RuntimeException e) {
+            Log.w(TAG, "Cannot read the state of " + pageId, e);
+            return null;
+        }
+        finally {
+            parcel.recycle();
+        }
+    }
+
+    private static byte[] marshall(Bundle state) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.writeBundle(state);
+            return parcel.marshall();
+        }
+        finally {
+            parcel.recycle();
+        }
+    }
+
+    /**
+     * Runs on the file executor
+     */
+    private static void writeFile(File file, byte[] data) {
+        File directory = file.getParentFile();
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.w(TAG, "Cannot create " + directory);
+            return;
+        }
+
+        DataOutputStream out = null;
+        boolean written = false;
+        try {
+            out = new DataOutputStream(new FileOutputStream(file));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(Build.FINGERPRINT);
+            out.writeInt(data.length);
+            out.write(data);
+            written = true;
+        }
+        catch (IOException e) {
+            Log.w(TAG, "Cannot write " + file, e);
+        }
+        finally {
+            close(out);
+            if (!written) file.delete();//a partial file must not be read back
+        }
+    }
+
+    /**
+     * @return the marshalled state or null if the file is missing, broken or was written by
+     * another build of the platform
+     */
+    private static byte[] readFile(File file) {
+        if (!file.exists()) return null;
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(file));
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION
+                    || !Build.FINGERPRINT.equals(in.readUTF())) {
+                Log.w(TAG, "Ignoring " + file + " which was written by another build");
+                return null;
+            }
+
+            int length = in.readInt();
+            if (length < 0 || length > file.length()) throw new IOException("Broken " + file);
+
+            byte[] data = new byte[length];
+            in.readFully(data);
+
+            return data;
+        }
+        catch (IOException e) {
+            Log.w(TAG, "Cannot read " + file, e);
+            return null;
+        }
+        finally {
+            close(in);
+        }
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable == null) return;
+
+        try {
+            closeable.close();
+        }
+        catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Runs its tasks one at a time and in order on the background executor
+     */
+    private static final class SerialExecutor implements Executor {
+        private final ArrayDeque<Runnable> mTasks = new ArrayDeque<>();
+        private Runnable mActive;
+        private boolean mFlushing;
+
+        @Override
+        public synchronized void execute(final Runnable task) {
+            mTasks.add(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        task.run();
+                    }
+                    finally {
+                        scheduleNext();
+                    }
+                }
+            });
+            if (mActive == null) scheduleNext();
+        }
+
+        private synchronized void scheduleNext() {
+            mActive = mFlushing ? null : mTasks.poll();
+            if (mActive != null) FolioExecutors.background().execute(mActive);
+            notifyAll();
+        }
+
+        /**
+         * Waits for the running task and runs the queued ones on the calling thread
+         */
+        void flush() {
+            synchronized (this) {
+                mFlushing = true;
+                try {
+                    while (mActive != null) wait();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    mFlushing = false;
+                    if (mActive == null) scheduleNext();
+                    return;
+                }
+            }
+
+            try {
+                Runnable task;
+                while ((task = poll()) != null) task.run();
+            }
+            finally {
+                synchronized (this) {
+                    mFlushing = false;
+                    if (mActive == null) scheduleNext();
+                }
+            }
+        }
+
+        private synchronized Runnable poll() {
+            return mTasks.poll();
+        }
+    }
+}
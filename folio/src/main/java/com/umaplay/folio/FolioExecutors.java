@@ -0,0 +1,71 @@
+package com.umaplay.folio;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared executors used by the framework for work that should stay off the main thread
+ */
+final class FolioExecutors {
+
+    private static final int POOL_SIZE =
+            Math.max(2, Math.min(Runtime.getRuntime().availableProcessors() - 1, 4));
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static ExecutorService sBackground;
+    private static Handler sMainHandler;
+
+    static synchronized ExecutorService background() {
+        if (sBackground == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE,
+                    KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new BackgroundThreadFactory());
+            executor.allowCoreThreadTimeOut(true);
+            sBackground = executor;
+        }
+
+        return sBackground;
+    }
+
+    static synchronized Handler main() {
+        if (sMainHandler == null) {
+            sMainHandler = new Handler(Looper.getMainLooper());
+        }
+
+        return sMainHandler;
+    }
+
+    static boolean isMainThread() {
+        return Looper.myLooper() == Looper.getMainLooper();
+    }
+
+    private static class BackgroundThreadFactory implements ThreadFactory {
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "Folio #" + mCount.incrementAndGet());
+            thread.setDaemon(true);
+
+            return thread;
+        }
+    }
+
+    private FolioExecutors() {
+        throw new AssertionError("No instances");
+    }
+}
@@ -0,0 +1,65 @@
+package com.umaplay.folio;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.Choreographer;
+
+/**
+ * Counts frames and the refresh intervals in which no frame was drawn using Choreographer frame
+ * callbacks. Must be used on the main thread.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+class FrameMonitor implements Choreographer.FrameCallback {
+
+    private final long mFrameIntervalNanos;
+    private long mLastFrameNanos;
+    private boolean mRunning;
+    private int mFrames;
+    private int mSlowFrames;
+    private int mDroppedFrames;
+
+    FrameMonitor(long frameIntervalNanos) {
+        mFrameIntervalNanos = frameIntervalNanos;
+    }
+
+    void start() {
+        mRunning = true;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    void stop() {
+        mRunning = false;
+        Choreographer.getInstance().removeFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!mRunning) return;
+
+        if (mLastFrameNanos != 0) {
+            mFrames++;
+
+            long intervals = (frameTimeNanos - mLastFrameNanos + mFrameIntervalNanos / 2)
+                    / mFrameIntervalNanos;
+            if (intervals > 1) {
+                mSlowFrames++;
+                mDroppedFrames += intervals - 1;
+            }
+        }
+
+        mLastFrameNanos = frameTimeNanos;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    int getFrames() {
+        return mFrames;
+    }
+
+    int getSlowFrames() {
+        return mSlowFrames;
+    }
+
+    int getDroppedFrames() {
+        return mDroppedFrames;
+    }
+}
@@ -0,0 +1,169 @@
+package com.umaplay.folio;
+
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.ValueAnimator;
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.Choreographer;
+import android.view.View;
+import android.view.animation.DecelerateInterpolator;
+
+import com.umaplay.folio.animator.AnimatorScrubber;
+import com.umaplay.folio.animator.AnimatorUtils;
+import com.umaplay.folio.animator.PageAnimatorFactory;
+import com.umaplay.folio.animator.SeekablePageAnimatorFactory;
+
+/**
+ * A back transition driven by a gesture. The Animators of the two Pages are never started, they
+ * are seeked to the progress of the gesture once per frame. On release the transition settles
+ * to either end and reports whether it was committed. Must be used on the main thread.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+abstract class InteractiveBackTransition implements Choreographer.FrameCallback {
+
+    private final Seeker mOut;
+    private final Seeker mIn;
+    private float mFraction;
+    private boolean mFramePosted;
+    private ValueAnimator mSettle;
+    private boolean mFinished;
+
+    InteractiveBackTransition(View outView, PageAnimatorFactory outFactory, View inView,
+                              PageAnimatorFactory inFactory) {
+        mOut = new Seeker(outFactory, outFactory.createOutAnimator(outView));
+        mIn = new Seeker(inFactory, inFactory.createInAnimator(inView));
+
+        //the Animators are not started so their own layer listeners never run
+        AnimatorUtils.beginHardwareLayers(mOut.mAnimator);
+        AnimatorUtils.beginHardwareLayers(mIn.mAnimator);
+
+        seek(0f);
+    }
+
+    /**
+     * Called once the transition has settled
+     *
+     * @param committed true if the out Page has to be popped, false if the in Page has to be
+     *                  unmounted again
+     */
+    abstract void onFinished(boolean committed);
+
+    /**
+     * @return the duration of the longer of the two Animators
+     */
+    long getDuration() {
+        return Math.max(mOut.getDuration(), mIn.getDuration());
+    }
+
+    float getFraction() {
+        return mFraction;
+    }
+
+    /**
+     * Moves the transition to the fraction on the next frame
+     */
+    void setFraction(float fraction) {
+        if(mFinished || mSettle != null) return;
+
+        mFraction = Math.max(0f, Math.min(1f, fraction));
+        if(!mFramePosted) {
+            mFramePosted = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        mFramePosted = false;
+        if(!mFinished) seek(mFraction);
+    }
+
+    /**
+     * Animates the rest of the transition to the end if it is committed or back to the start
+     */
+    void settle(final boolean commit) {
+        if(mFinished || mSettle != null) return;
+        cancelFrame();
+
+        float target = commit ? 1f : 0f;
+        mSettle = ValueAnimator.ofFloat(mFraction, target);
+        mSettle.setDuration((long) (getDuration() * Math.abs(target - mFraction)));
+        mSettle.setInterpolator(new DecelerateInterpolator());
+        mSettle.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+            @Override
+            public void onAnimationUpdate(ValueAnimator animator) {
+                mFraction = (Float) animator.getAnimatedValue();
+                seek(mFraction);
+            }
+        });
+        mSettle.addListener(new AnimatorListenerAdapter() {
+            @Override
+            public void onAnimationEnd(Animator animator) {
+                finish(commit);
+            }
+        });
+        mSettle.start();
+    }
+
+    /**
+     * Moves the transition back to the start right away
+     */
+    void cancel() {
+        if(mFinished) return;
+        cancelFrame();
+
+        if(mSettle != null) {
+            mSettle.removeAllListeners();
+            mSettle.cancel();
+        }
+
+        mFraction = 0f;
+        seek(0f);
+        finish(false);
+    }
+
+    private void cancelFrame() {
+        if(mFramePosted) {
+            mFramePosted = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+    }
+
+    private void finish(boolean committed) {
+        mFinished = true;
+        mSettle = null;
+
+        AnimatorUtils.endHardwareLayers(mOut.mAnimator);
+        AnimatorUtils.endHardwareLayers(mIn.mAnimator);
+
+        onFinished(committed);
+    }
+
+    private void seek(float fraction) {
+        mOut.seek(fraction);
+        mIn.seek(fraction);
+    }
+
+    private static final class Seeker {
+        private final Animator mAnimator;
+        private final SeekablePageAnimatorFactory mFactory;
+        private final AnimatorScrubber mScrubber;
+
+        Seeker(PageAnimatorFactory factory, Animator animator) {
+            mAnimator = animator;
+            mFactory = factory instanceof SeekablePageAnimatorFactory
+                    ? (SeekablePageAnimatorFactory) factory : null;
+            mScrubber = new AnimatorScrubber(animator);
+        }
+
+        long getDuration() {
+            return Math.max(mScrubber.getTotalDuration(), mAnimator.getDuration());
+        }
+
+        void seek(float fraction) {
+            if(mFactory != null) mFactory.seek(mAnimator, fraction);
+            else mScrubber.seek(fraction);
+        }
+    }
+}
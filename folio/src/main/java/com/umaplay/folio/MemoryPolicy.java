@@ -0,0 +1,77 @@
+package com.umaplay.folio;
+
+import android.content.ComponentCallbacks2;
+
+/**
+ * Decides what a PageManager releases at each trim memory level. Each kind of memory is released
+ * once the level reaches its threshold, see the TRIM_MEMORY constants of ComponentCallbacks2.
+ * onLowMemory is treated as TRIM_MEMORY_COMPLETE.
+ *
+ * <pre>
+ *     pageManager.setMemoryPolicy(new MemoryPolicy().dropRetainedViewsAt(TRIM_MEMORY_RUNNING_MODERATE));
+ * </pre>
+ */
+public class MemoryPolicy {
+
+    /**
+     * A threshold which is never reached
+     */
+    public static final int NEVER = Integer.MAX_VALUE;
+
+    private int mPrefetchLevel = ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW;
+    private int mRetainedViewsLevel = ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW;
+    private int mPagesLevel = ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE;
+    private int mStatesLevel = ComponentCallbacks2.TRIM_MEMORY_BACKGROUND;
+
+    /**
+     * Prefetched Pages which have not been used yet are discarded. Defaults to
+     * TRIM_MEMORY_RUNNING_LOW.
+     */
+    public MemoryPolicy discardPrefetchesAt(int level) {
+        mPrefetchLevel = level;
+        return this;
+    }
+
+    /**
+     * Views retained for the Pages below the top and their snapshots are dropped. Defaults to
+     * TRIM_MEMORY_RUNNING_LOW.
+     */
+    public MemoryPolicy dropRetainedViewsAt(int level) {
+        mRetainedViewsLevel = level;
+        return this;
+    }
+
+    /**
+     * {@link Page#onTrimMemory} is called on every created Page, including the Pages of nested
+     * PageManagers. Defaults to TRIM_MEMORY_RUNNING_MODERATE.
+     */
+    public MemoryPolicy trimPagesAt(int level) {
+        mPagesLevel = level;
+        return this;
+    }
+
+    /**
+     * The PageStateStore releases the saved states it can get back later, see
+     * {@link PageStateStore#onTrimMemory}. Defaults to TRIM_MEMORY_BACKGROUND.
+     */
+    public MemoryPolicy trimStatesAt(int level) {
+        mStatesLevel = level;
+        return this;
+    }
+
+    boolean shouldDiscardPrefetches(int level) {
+        return level >= mPrefetchLevel;
+    }
+
+    boolean shouldDropRetainedViews(int level) {
+        return level >= mRetainedViewsLevel;
+    }
+
+    boolean shouldTrimPages(int level) {
+        return level >= mPagesLevel;
+    }
+
+    boolean shouldTrimStates(int level) {
+        return level >= mStatesLevel;
+    }
+}
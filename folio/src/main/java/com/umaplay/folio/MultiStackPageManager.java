@@ -0,0 +1,331 @@
+package com.umaplay.folio;
+
+import android.os.Bundle;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import com.squareup.leakcanary.RefWatcher;
+import com.umaplay.folio.leak.LeakWatchPolicy;
+import com.umaplay.folio.leak.RefWatcherPolicy;
+import com.umaplay.folio.trace.FolioTracers;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+import static com.umaplay.folio.Preconditions.checkNotNull;
+import static com.umaplay.folio.Preconditions.checkTrue;
+
+/**
+ * Manages several named navigation stacks, e.g. one per tab of a bottom navigation, inside one
+ * container. Each stack has a PageManager of its own with its own container, only the container
+ * of the active stack is attached.
+ *
+ * Inactive stacks are kept alive with their top View detached so switching back to them does not
+ * create anything. Beyond the keep alive limit the least recently used inactive stacks are
+ * frozen: their state is saved and their PageManager destroyed, they are restored when they are
+ * switched to again. Lifecycle callbacks only reach the active stack.
+ *
+ * A restored MultiStackPageManager switches to the stack which was active once it is added
+ * again. Only switch to an initial stack on a fresh start, otherwise it replaces the restored one.
+ *
+ * <pre>
+ *     stacks = new MultiStackPageManager(container, this, refWatcher, savedInstanceState);
+ *     stacks.addStack("home", new HomePage.Factory());
+ *     stacks.addStack("search", new SearchPage.Factory());
+ *     if (savedInstanceState == null) stacks.switchTo("home");
+ * </pre>
+ */
+public class MultiStackPageManager {
+
+    private static final String NAMES_TAG = "MultiStackPageManager.NAMES_TAG";
+    private static final String ACTIVE_TAG = "MultiStackPageManager.ACTIVE_TAG";
+    private static final String STACK_TAG = "MultiStackPageManager.STACK_TAG.";
+
+    private final ViewGroup mContainer;
+    private final PageStackDelegate mPageStackDelegate;
+    private final LeakWatchPolicy mLeakWatchPolicy;
+    private final LinkedHashMap<String, NamedStack> mStacks = new LinkedHashMap<>();
+    private NamedStack mActive;
+    private String mRestoredActive;
+    private int mKeepAliveLimit = 3;
+    private long mSwitches;
+    private boolean mHasStarted;
+    private boolean mHasResumed;
+
+    /**
+     * @param container Any ViewGroup to hold the containers of the stacks. Typically a FrameLayout
+     * @param delegate  A PageStackDelegate notified when the active stack is empty
+     */
+    public MultiStackPageManager(ViewGroup container, PageStackDelegate delegate,
+                                 RefWatcher refWatcher, Bundle savedInstanceState) {
+        this(container, delegate, new RefWatcherPolicy(refWatcher), savedInstanceState);
+    }
+
+    /**
+     * @param container Any ViewGroup to hold the containers of the stacks. Typically a FrameLayout
+     * @param delegate  A PageStackDelegate notified when the active stack is empty
+     * @param leakWatchPolicy Watches destroyed Pages and removed Views of every stack
+     */
+    public MultiStackPageManager(ViewGroup container, PageStackDelegate delegate,
+                                 LeakWatchPolicy leakWatchPolicy, Bundle savedInstanceState) {
+        checkNotNull(container, "container == null");
+        checkNotNull(leakWatchPolicy, "leakWatchPolicy == null");
+
+        mContainer = container;
+        mPageStackDelegate = delegate;
+        mLeakWatchPolicy = leakWatchPolicy;
+
+        if(savedInstanceState != null) restoreInstanceState(savedInstanceState);
+    }
+
+    /**
+     * Adds a stack which starts with a Page created by the provided PageFactory. The stack is
+     * created the first time it is switched to. Adding a stack which was restored keeps the
+     * restored Pages.
+     *
+     * @param name a name unique to the stack
+     * @param rootFactory responsible for the creation of the first Page of the stack
+     */
+    public void addStack(String name, PageFactory rootFactory) {
+        checkNotNull(name, "name == null");
+        checkNotNull(rootFactory, "rootFactory == null");
+
+        NamedStack stack = mStacks.get(name);
+        if(stack == null) {
+            mStacks.put(name, new NamedStack(name, rootFactory));
+        }
+        else {
+            stack.mRootFactory = rootFactory;
+        }
+
+        if(mActive == null && name.equals(mRestoredActive)) switchTo(name);
+    }
+
+    /**
+     * Makes the stack with the provided name the active one. Its container is attached in place
+     * of the container of the previously active stack.
+     *
+     * @return the PageManager of the stack
+     */
+    public PageManager switchTo(String name) {
+        NamedStack stack = mStacks.get(name);
+        if(stack == null) throw new NullPointerException("No stack named " + name);
+
+        if(stack == mActive) return stack.mPageManager;
+        stack.mLastUsed = ++mSwitches;
+        FolioTracers.get().onLifecycleEvent(this, "switchTo");
+
+        if(mActive != null) deactivate(mActive);
+
+        mActive = stack;
+        activate(stack);
+        freezeInactiveStacks(mKeepAliveLimit);
+
+        return stack.mPageManager;
+    }
+
+    /**
+     * @return the PageManager of the active stack
+     */
+    public PageManager getActivePageManager() {
+        checkTrue(mActive != null, "No stack is active");
+
+        return mActive.mPageManager;
+    }
+
+    /**
+     * @return the name of the active stack or null if no stack is active
+     */
+    public String getActiveStackName() {
+        return mActive != null ? mActive.mName : null;
+    }
+
+    /**
+     * @return the names of all stacks in the order they were added
+     */
+    public ArrayList<String> getStackNames() {
+        return new ArrayList<>(mStacks.keySet());
+    }
+
+    /**
+     * Sets how many inactive stacks are kept alive. Defaults to 3.
+     *
+     * @param limit the number of inactive stacks kept alive, 0 freezes every inactive stack
+     */
+    public void setKeepAliveLimit(int limit) {
+        checkTrue(limit >= 0, "limit < 0");
+
+        mKeepAliveLimit = limit;
+        freezeInactiveStacks(limit);
+    }
+
+    public int getKeepAliveLimit() {
+        return mKeepAliveLimit;
+    }
+
+    /**
+     * @return true if the stack has a live PageManager, false if it is frozen or was not created
+     */
+    public boolean isStackAlive(String name) {
+        NamedStack stack = mStacks.get(name);
+        return stack != null && stack.mPageManager != null;
+    }
+
+    /**
+     * Pops the top Page of the active stack
+     *
+     * @return false if there is no active stack
+     */
+    public boolean goBack() {
+        if(mActive == null) return false;
+
+        mActive.mPageManager.goBack();
+        return true;
+    }
+
+    public void onStart() {
+        mHasStarted = true;
+        if(mActive != null) mActive.mPageManager.onStart();
+    }
+
+    public void onResume() {
+        mHasResumed = true;
+        if(mActive != null) mActive.mPageManager.onResume();
+    }
+
+    public void onPause() {
+        mHasResumed = false;
+        if(mActive != null) mActive.mPageManager.onPause();
+    }
+
+    public void onStop() {
+        mHasStarted = false;
+        if(mActive != null) mActive.mPageManager.onStop();
+    }
+
+    public void onDestroy() {
+        for (NamedStack stack : mStacks.values()) {
+            if(stack.mPageManager != null) {
+                stack.mPageManager.onDestroy();
+                stack.mPageManager = null;
+            }
+        }
+
+        if(mActive != null) mContainer.removeView(mActive.mContainer);
+        mActive = null;
+    }
+
+    /**
+     * Saves every stack into the provided Bundle. Frozen stacks keep the state they were frozen
+     * with.
+     */
+    public void onSaveInstanceState(Bundle outState) {
+        checkNotNull(outState, "bundle == null");
+
+        ArrayList<String> names = new ArrayList<>(mStacks.size());
+        for (NamedStack stack : mStacks.values()) {
+            if(stack.mPageManager != null) {
+                Bundle state = new Bundle();
+                stack.mPageManager.onSaveInstanceState(state);
+                outState.putBundle(STACK_TAG + stack.mName, state);
+            }
+            else if(stack.mFrozenState != null) {
+                outState.putBundle(STACK_TAG + stack.mName, stack.mFrozenState);
+            }
+            names.add(stack.mName);
+        }
+
+        outState.putStringArrayList(NAMES_TAG, names);
+        outState.putString(ACTIVE_TAG, getActiveStackName());
+    }
+
+    private void restoreInstanceState(Bundle bundle) {
+        ArrayList<String> names = bundle.getStringArrayList(NAMES_TAG);
+        checkNotNull(names, "Bundle doesn't contain MultiStackPageManager state.");
+
+        //the stacks are restored when they are added and switched to
+        for (String name : names) {
+            NamedStack stack = new NamedStack(name, null);
+            stack.mFrozenState = bundle.getBundle(STACK_TAG + name);
+            mStacks.put(name, stack);
+        }
+        mRestoredActive = bundle.getString(ACTIVE_TAG);
+    }
+
+    private void activate(NamedStack stack) {
+        if(stack.mPageManager == null) {
+            if(stack.mFrozenState == null && stack.mRootFactory == null)
+                throw new NullPointerException("Stack " + stack.mName + " has not been added");
+
+            stack.mContainer = new FrameLayout(mContainer.getContext());
+            stack.mPageManager = new PageManager(stack.mContainer, mPageStackDelegate,
+                    mLeakWatchPolicy, stack.mFrozenState);
+            if(stack.mFrozenState == null) stack.mPageManager.goTo(stack.mRootFactory);
+            stack.mFrozenState = null;
+        }
+
+        mContainer.addView(stack.mContainer, new ViewGroup.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+
+        if(mHasStarted) stack.mPageManager.onStart();
+        if(mHasResumed) stack.mPageManager.onResume();
+    }
+
+    private void deactivate(NamedStack stack) {
+        PageManager pageManager = stack.mPageManager;
+        pageManager.endRunningTransition();
+
+        if(mHasResumed) pageManager.onPause();
+        if(mHasStarted) pageManager.onStop();
+
+        //the views stay alive, they are just not attached
+        mContainer.removeView(stack.mContainer);
+    }
+
+    /**
+     * Freezes the least recently used inactive stacks beyond the limit
+     */
+    private void freezeInactiveStacks(int limit) {
+        while (true) {
+            int alive = 0;
+            NamedStack leastRecentlyUsed = null;
+            for (NamedStack stack : mStacks.values()) {
+                if(stack == mActive || stack.mPageManager == null) continue;
+
+                alive++;
+                if(leastRecentlyUsed == null || stack.mLastUsed < leastRecentlyUsed.mLastUsed)
+                    leastRecentlyUsed = stack;
+            }
+
+            if(alive <= limit) return;
+            freeze(leastRecentlyUsed);
+        }
+    }
+
+    private void freeze(NamedStack stack) {
+        FolioTracers.get().onLifecycleEvent(this, "freeze");
+
+        Bundle state = new Bundle();
+        stack.mPageManager.onSaveInstanceState(state);
+        stack.mPageManager.onDestroy();
+        mLeakWatchPolicy.watch(stack.mContainer);
+
+        stack.mFrozenState = state;
+        stack.mPageManager = null;
+        stack.mContainer = null;
+    }
+
+    private static final class NamedStack {
+        final String mName;
+        PageFactory mRootFactory;
+        long mLastUsed;
+        FrameLayout mContainer;
+        PageManager mPageManager;
+        Bundle mFrozenState;
+
+        NamedStack(String name, PageFactory rootFactory) {
+            mName = name;
+            mRootFactory = rootFactory;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.umaplay.folio;
+
+import android.os.Handler;
+
+import com.umaplay.folio.animator.NoAnimationFactory;
+import com.umaplay.folio.animator.PageAnimatorFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.umaplay.folio.Preconditions.checkNotNull;
+
+/**
+ * Serializes navigation requests in front of a PageManager. Requests can be made from any thread,
+ * they are applied in order on the main thread.
+ *
+ * Requests are collected until the main thread gets to them and a request which duplicates the
+ * last pending one is dropped. Factories are compared with equals, so a PageFactory which
+ * implements it, e.g. by its arguments, is coalesced when a double tap creates it twice. A goTo
+ * which duplicates the previous goTo is also dropped while that transition is still running.
+ * goBack is never dropped, each call pops a Page. Any other request arriving during a transition
+ * jumps to its end before it is applied.
+ *
+ * Once the PageManager is destroyed the pending requests are dropped and new ones are ignored.
+ */
+public class NavigationQueue {
+
+    private static final int GO_TO = 0;
+    private static final int REPLACE_ALL = 1;
+    private static final int GO_BACK = 2;
+    private static final int GO_BACK_TO = 3;
+    private static final int GO_TO_FIRST = 4;
+
+    private final PageManager mPageManager;
+    private final Handler mHandler = FolioExecutors.main();
+    private final List<Command> mPending = new ArrayList<>();
+    private final Runnable mDrain = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+    private boolean mDrainScheduled;
+    private Command mLastApplied;
+    private int mCoalesced;
+
+    public NavigationQueue(PageManager pageManager) {
+        checkNotNull(pageManager, "pageManager == null");
+        mPageManager = pageManager;
+    }
+
+    public void goTo(PageFactory factory) {
+        goTo(factory, new NoAnimationFactory());
+    }
+
+    public void goTo(PageFactory factory, PageAnimatorFactory pageAnimatorFactory) {
+        checkNotNull(factory, "factory == null");
+        checkNotNull(pageAnimatorFactory, "pageAnimatorFactory == null");
+
+        enqueue(new Command(GO_TO, factory, pageAnimatorFactory, null, true));
+    }
+
+    public void replaceAll(PageFactory factory) {
+        replaceAll(factory, new NoAnimationFactory());
+    }
+
+    public void replaceAll(PageFactory factory, PageAnimatorFactory pageAnimatorFactory) {
+        checkNotNull(factory, "factory == null");
+        checkNotNull(pageAnimatorFactory, "pageAnimatorFactory == null");
+
+        enqueue(new Command(REPLACE_ALL, factory, pageAnimatorFactory, null, true));
+    }
+
+    public void goBack() {
+        goBack(true);
+    }
+
+    public void goBack(boolean animateTransition) {
+        enqueue(new Command(GO_BACK, null, null, null, animateTransition));
+    }
+
+    public void goBackTo(String pageId) {
+        goBackTo(pageId, true);
+    }
+
+    public void goBackTo(String pageId, boolean animateTransition) {
+        checkNotNull(pageId, "pageId == null");
+
+        enqueue(new Command(GO_BACK_TO, null, null, pageId, animateTransition));
+    }
+
+    public void gotoFirst() {
+        enqueue(new Command(GO_TO_FIRST, null, null, null, false));
+    }
+
+    /**
+     * Drops every request which has not been applied yet
+     */
+    public void cancelAll() {
+        synchronized (mPending) {
+            mPending.clear();
+        }
+    }
+
+    /**
+     * @return the number of requests which were dropped as duplicates
+     */
+    public int getCoalescedCount() {
+        synchronized (mPending) {
+            return mCoalesced;
+        }
+    }
+
+    private void enqueue(Command command) {
+        synchronized (mPending) {
+            //only the last request, coalescing across others would change the resulting stack
+            if(!mPending.isEmpty() && mPending.get(mPending.size() - 1).isDuplicateOf(command)) {
+                mCoalesced++;
+                return;
+            }
+
+            mPending.add(command);
+            if(mDrainScheduled) return;
+            mDrainScheduled = true;
+        }
+
+        mHandler.post(mDrain);
+    }
+
+    private void drain() {
+        List<Command> commands;
+        synchronized (mPending) {
+            commands = new ArrayList<>(mPending);
+            mPending.clear();
+            mDrainScheduled = false;
+        }
+        if(mPageManager.isDestroyed()) {
+            mLastApplied = null;
+            return;
+        }
+
+        for (Command command : commands) {
+            if(command.kind == GO_TO && mLastApplied != null && mPageManager.isTransitionRunning()
+                    && mLastApplied.isDuplicateOf(command)) {
+                synchronized (mPending) {
+                    mCoalesced++;
+                }
+                continue;
+            }
+
+            apply(command);
+            mLastApplied = command;
+        }
+        //only a running transition can make a goTo a duplicate, don't keep the factory alive
+        if(!mPageManager.isTransitionRunning()) mLastApplied = null;
+    }
+
+    private void apply(Command command) {
+        switch (command.kind) {
+            case GO_TO:
+                mPageManager.goTo(command.factory, command.animatorFactory);
+                break;
+            case REPLACE_ALL:
+                mPageManager.replaceAll(command.factory, command.animatorFactory);
+                break;
+            case GO_BACK:
+                mPageManager.goBack(command.animate);
+                break;
+            case GO_BACK_TO:
+                mPageManager.goBackTo(command.pageId, command.animate);
+                break;
+            case GO_TO_FIRST:
+                mPageManager.gotoFirst();
+                break;
+        }
+    }
+
+    private static final class Command {
+        final int kind;
+        final PageFactory factory;
+        final PageAnimatorFactory animatorFactory;
+        final String pageId;
+        final boolean animate;
+
+        Command(int kind, PageFactory factory, PageAnimatorFactory animatorFactory, String pageId,
+                boolean animate) {
+            this.kind = kind;
+            this.factory = factory;
+            this.animatorFactory = animatorFactory;
+            this.pageId = pageId;
+            this.animate = animate;
+        }
+
+        /**
+         * goBack is never a duplicate, two of them pop two Pages
+         */
+        boolean isDuplicateOf(Command other) {
+            return kind != GO_BACK
+                    && kind == other.kind
+                    && animate == other.animate
+                    && (factory == null ? other.factory == null : factory.equals(other.factory))
+                    && (pageId == null ? other.pageId == null : pageId.equals(other.pageId));
+        }
+    }
+}
@@ -5,25 +5,25 @@ import android.os.Bundle;
 import android.os.Parcelable;
 import android.support.annotation.CallSuper;
 import android.support.annotation.LayoutRes;
-import android.util.Log;
 import android.util.SparseArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
 import com.umaplay.folio.animator.PageAnimatorFactory;
+import com.umaplay.folio.trace.FolioTracers;
 
 import java.io.Serializable;
 
 /**
  * Created by user on 2/27/2016.
  */
-public abstract class Page implements Serializable {
+public abstract class Page implements Serializable, PageLifecycleOwner {
 
-    private static final String TAG = "Folio::Page";
+    private static final String NESTED_STATE_KEY = "Page.NESTED_STATE_KEY";
 
     private PageManager mPageManager;
-    private PageManager.NestedPageManager mNestedPageManager;
+    private SparseArray<PageManager.NestedPageManager> mNestedPageManagers;
     private boolean mIsMounted;
     private boolean mHasFocus;
     private boolean mIsVisible;
@@ -32,11 +32,17 @@ public abstract class Page implements Serializable {
     private Bundle mDeferredPageState;
     private SparseArray<Parcelable> mDeferredViewState;
     private String mPageId;
+    private LayoutInflater mLayoutInflater;
+    private PageScope mScope;
+    private boolean mStateDirty = true;
+    private final PageLifecycle mLifecycle =
+            new PageLifecycle(this, PageLifecycle.State.INITIALIZED);
 
     @CallSuper
     public void onCreate() {
         mIsMounted = false;
-        Log.d(TAG, this.getClass().getName() + "::onCreate");
+        mLifecycle.moveTo(PageLifecycle.State.CREATED);
+        FolioTracers.get().onLifecycleEvent(this, "onCreate");
     }
 
     public abstract View onCreateView(Context context, ViewGroup container);
@@ -45,81 +51,141 @@ public abstract class Page implements Serializable {
     public void onViewMounted(View view) {
         mIsMounted = true;
         mView = view;
-        Log.d(TAG, this.getClass().getName() + "::onViewMounted");
+        mLifecycle.moveTo(PageLifecycle.State.MOUNTED);
+        FolioTracers.get().onLifecycleEvent(this, "onViewMounted");
+    }
+
+    /**
+     * Called after onViewMounted when the Page is mounted again with the View that was retained
+     * when it was last unmounted. The View still holds its state, so onRestoreState is not called.
+     *
+     * @param view the retained View
+     */
+    @CallSuper
+    public void onViewRecycled(View view) {
+        FolioTracers.get().onLifecycleEvent(this, "onViewRecycled");
+    }
+
+    /**
+     * Called when the Page is mounted again with a newly created View, after onViewMounted and
+     * onRestoreState.
+     *
+     * @param view the newly created View
+     */
+    @CallSuper
+    public void onViewRecreated(View view) {
+        FolioTracers.get().onLifecycleEvent(this, "onViewRecreated");
     }
 
     @CallSuper
     public void onRestoreState(Bundle bundle) {
-        if (peekNestedPageManager() != null) {
-            peekNestedPageManager().onRestoreInstanceState(bundle);
+        for (int i = 0; i < nestedPageManagerCount(); i++) {
+            Bundle state = nestedStateOf(bundle, mNestedPageManagers.keyAt(i),
+                    nestedPageManagerCount() == 1);
+            if (state != null)
+                nestedPageManagerAt(i).onRestoreInstanceState(state);
         }
-        else
-            mDeferredPageState = bundle;//let's save it for later
+        mDeferredPageState = bundle;//for nested PageManagers created later
 
         //user might need to manually restore view state later
         this.mDeferredViewState = bundle.getSparseParcelableArray("PageManager.VIEW_STATE_KEY");
 
-        Log.d(TAG, this.getClass().getName() + "::onRestoreState");
+        FolioTracers.get().onLifecycleEvent(this, "onRestoreState");
     }
 
     @CallSuper
     public void onPageIsVisible() {
         mIsVisible = true;
-        if (peekNestedPageManager() != null)
-            peekNestedPageManager().onStart();
-        Log.d(TAG, this.getClass().getName() + "::onPageIsVisible");
+        if (mScope != null)
+            mScope.resume();
+        mLifecycle.moveTo(PageLifecycle.State.VISIBLE);
+        FolioTracers.get().onLifecycleEvent(this, "onPageIsVisible");
     }
 
     @CallSuper
     public void onPageHasFocus() {
         mHasFocus = true;
-        if (peekNestedPageManager() != null)
-            peekNestedPageManager().onResume();
-        Log.d(TAG, this.getClass().getName() + "::onPageHasFocus");
+        mStateDirty = true;//its Views may change without the Page knowing while it has focus
+        mLifecycle.moveTo(PageLifecycle.State.FOCUSED);
+        FolioTracers.get().onLifecycleEvent(this, "onPageHasFocus");
     }
 
     @CallSuper
     public void onPageLostFocus() {
         mHasFocus = false;
-        if (peekNestedPageManager() != null)
-            peekNestedPageManager().onPause();
-        Log.d(TAG, this.getClass().getName() + "::onPageLostFocus");
+        mLifecycle.moveTo(PageLifecycle.State.VISIBLE);
+        FolioTracers.get().onLifecycleEvent(this, "onPageLostFocus");
     }
 
     @CallSuper
     public void onPageIsInvisible() {
-        if (peekNestedPageManager() != null)
-            peekNestedPageManager().onStop();
         mIsVisible = false;
-        Log.d(TAG, this.getClass().getName() + "::onPageIsInvisible");
+        if (mScope != null)
+            mScope.pause();
+        mLifecycle.moveTo(PageLifecycle.State.MOUNTED);
+        FolioTracers.get().onLifecycleEvent(this, "onPageIsInvisible");
     }
 
     @CallSuper
     public void onSaveState(Bundle outBundle) {
-        if (peekNestedPageManager() != null)
-            peekNestedPageManager().onSaveInstanceState(outBundle);
+        if (nestedPageManagerCount() > 0) {
+            //all nested PageManagers are saved together, each under the id of its container
+            Bundle nested = new Bundle();
+            for (int i = 0; i < nestedPageManagerCount(); i++) {
+                Bundle state = new Bundle();
+                nestedPageManagerAt(i).onSaveInstanceState(state);
+                nested.putBundle(String.valueOf(mNestedPageManagers.keyAt(i)), state);
+            }
+            outBundle.putBundle(NESTED_STATE_KEY, nested);
+        }
 
-        Log.d(TAG, this.getClass().getName() + "::onSaveState");
+        FolioTracers.get().onLifecycleEvent(this, "onSaveState");
     }
 
     @CallSuper
     public void onViewUnmounted() {
         mIsMounted = false;
         mView = null;
-        Log.d(TAG, this.getClass().getName() + "::onViewUnmounted");
+        mLifecycle.moveTo(PageLifecycle.State.CREATED);
+        FolioTracers.get().onLifecycleEvent(this, "onViewUnmounted");
+    }
+
+    /**
+     * Called when the PageManager trims its memory, see {@link MemoryPolicy}. Release caches
+     * which can be rebuilt, e.g. decoded images, depending on the level. Nested PageManagers are
+     * trimmed after this.
+     *
+     * @param level the trim memory level, see ComponentCallbacks2
+     * @return the approximate number of bytes released, used for reporting only
+     */
+    public long onTrimMemory(int level) {
+        return 0;
+    }
+
+    long dispatchTrimMemory(int level, MemoryPolicy policy) {
+        long released = onTrimMemory(level);
+        for (int i = 0; i < nestedPageManagerCount(); i++) {
+            released += nestedPageManagerAt(i).trimMemory(level, policy);
+        }
+
+        return released;
     }
 
     @CallSuper
     public void onDestroy() {
-        if (peekNestedPageManager() != null)
-            peekNestedPageManager().onDestroy();
+        for (int i = 0; i < nestedPageManagerCount(); i++) {
+            nestedPageManagerAt(i).onDestroy();
+        }
+        if (mScope != null)
+            mScope.destroy();
 
         mIsMounted = false;
         mDeferredPageState = null;
         mPageManager = null;
-        mNestedPageManager = null;
+        mNestedPageManagers = null;
         mAnimatorFactory = null;
-        Log.d(TAG, this.getClass().getName() + "::onDestroy");
+        mLifecycle.moveTo(PageLifecycle.State.DESTROYED);
+        FolioTracers.get().onLifecycleEvent(this, "onDestroy");
     }
 
 
@@ -133,6 +199,36 @@ public abstract class Page implements Serializable {
         return mHasFocus;
     }
 
+    /**
+     * Tells the PageManager that the state of this Page has to be saved again. A Page is dirty
+     * until it is saved for the first time and whenever it gets focus, since the user may change
+     * its Views from then on. A Page which is mounted again keeps the state it was saved with and
+     * stays clean while it is covered. Call this when the Page changes its state or the state of
+     * its View without having focus, e.g. when data loaded in the background is bound.
+     */
+    public void markStateDirty() {
+        mStateDirty = true;
+    }
+
+    /**
+     * @return false if the state saved last is still current and can be reused
+     */
+    public boolean isStateDirty() {
+        return mStateDirty;
+    }
+
+    void markStateClean() {
+        mStateDirty = false;
+    }
+
+    /**
+     * @return the lifecycle of this Page, which follows its visibility instead of the host
+     */
+    @Override
+    public PageLifecycle getPageLifecycle() {
+        return mLifecycle;
+    }
+
     public View getView() {
         return mView;
     }
@@ -144,23 +240,74 @@ public abstract class Page implements Serializable {
         return mPageManager;
     }
 
+    /**
+     * @return the nested PageManager with the lowest container id or null if there is none,
+     * meant for Pages with a single nested PageManager
+     */
     public PageManager.NestedPageManager peekNestedPageManager() {
-        return mNestedPageManager;
+        return nestedPageManagerCount() > 0 ? nestedPageManagerAt(0) : null;
     }
+
+    /**
+     * @return the nested PageManager of the container with the id or null if there is none
+     */
+    public PageManager.NestedPageManager peekNestedPageManager(int containerId) {
+        return mNestedPageManagers != null ? mNestedPageManagers.get(containerId) : null;
+    }
+
+    /**
+     * Returns the nested PageManager of the container, creating it the first time. A Page can
+     * have several nested PageManagers, they are told apart by the id of their container so each
+     * container needs a distinct id.
+     *
+     * A nested PageManager is only started while its container is shown, call
+     * {@link #refreshNestedPageManagers()} after changing the visibility of a container.
+     */
     public PageManager.NestedPageManager getNestedPageManager(ViewGroup container) {
         if(!isMounted()) throw new IllegalStateException("Page has not been mounted");
 
-        if(peekNestedPageManager() == null) {
-            mNestedPageManager = mPageManager.getNestedPageManager(container, mDeferredPageState);
-            if(isVisible())
-                mNestedPageManager.onStart();
-            if(hasFocus())
-                mNestedPageManager.onResume();
+        int key = container.getId();
+        PageManager.NestedPageManager nestedPageManager = peekNestedPageManager(key);
+        if(nestedPageManager == null) {
+            Bundle state = mDeferredPageState != null
+                    ? nestedStateOf(mDeferredPageState, key, nestedPageManagerCount() == 0) : null;
+            nestedPageManager = mPageManager.getNestedPageManager(container, state);
 
-            mDeferredPageState = null;
+            if(mNestedPageManagers == null) mNestedPageManagers = new SparseArray<>(2);
+            mNestedPageManagers.put(key, nestedPageManager);
+            PageTree.sync(this, nestedPageManager);
         }
 
-        return mNestedPageManager;
+        return nestedPageManager;
+    }
+
+    /**
+     * Starts the nested PageManagers whose containers are shown and stops those whose containers
+     * are GONE or were removed
+     */
+    public void refreshNestedPageManagers() {
+        for (int i = 0; i < nestedPageManagerCount(); i++) {
+            PageTree.sync(this, nestedPageManagerAt(i));
+        }
+    }
+
+    int nestedPageManagerCount() {
+        return mNestedPageManagers != null ? mNestedPageManagers.size() : 0;
+    }
+
+    PageManager.NestedPageManager nestedPageManagerAt(int index) {
+        return mNestedPageManagers.valueAt(index);
+    }
+
+    /**
+     * @param legacy whether a state saved before Pages had several nested PageManagers applies
+     */
+    private static Bundle nestedStateOf(Bundle pageState, int key, boolean legacy) {
+        Bundle nested = pageState.getBundle(NESTED_STATE_KEY);
+        if (nested != null)
+            return nested.getBundle(String.valueOf(key));
+
+        return legacy && PageManager.hasSavedState(pageState) ? pageState : null;
     }
 
     public void setAnimatorFactory(PageAnimatorFactory outPageAnimatorFactory) {
@@ -176,8 +323,30 @@ public abstract class Page implements Serializable {
         return getView().getContext();
     }
 
+    /**
+     * Inflates a layout for onCreateView.
+     * Use this instead of LayoutInflater.from so the View can be safely created in the background
+     * when the Page is prefetched.
+     */
     protected View inflate(@LayoutRes int layout, Context context, ViewGroup container) {
-        return LayoutInflater.from(context).inflate(layout, container, false);
+        LayoutInflater inflater = mLayoutInflater != null ? mLayoutInflater
+                : LayoutInflater.from(context);
+
+        return inflater.inflate(layout, container, false);
+    }
+
+    /**
+     * Returns the PageScope for background work of this Page. Its tasks are cancelled when the
+     * Page is destroyed and their results are only delivered while the Page is alive.
+     */
+    public PageScope scope() {
+        if (mScope == null) mScope = new PageScope();
+
+        return mScope;
+    }
+
+    void setLayoutInflater(LayoutInflater inflater) {
+        mLayoutInflater = inflater;
     }
 
     public void setId(String id) {
@@ -209,6 +378,7 @@ public abstract class Page implements Serializable {
 //    View onCreateView(Context context, ViewGroup container);
 //    void onViewMounted(View view);
 //    void onRestoreState(Bundle);
+//    void onViewRecycled(View view) | void onViewRecreated(View view); when returning to the Page
 //    void onPageIsVisible();
 //    void onPageHasFocus();
 //    void onPageLostFocus();
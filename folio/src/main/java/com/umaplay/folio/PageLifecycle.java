@@ -0,0 +1,109 @@
+package com.umaplay.folio;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.umaplay.folio.Preconditions.checkNotNull;
+
+/**
+ * The lifecycle state of a Page or a NestedPageManager, see {@link PageLifecycleOwner}. Unlike
+ * the lifecycle of the host it follows what the user actually sees, so libraries like image
+ * loaders can pause their requests when the Page is covered and clear them when it is destroyed.
+ *
+ * Observers are notified of every step, a jump from FOCUSED to DESTROYED goes through VISIBLE,
+ * MOUNTED and CREATED. Must be used on the main thread.
+ */
+public final class PageLifecycle {
+
+    public enum State {
+        /**
+         * The Page was destroyed, no more events follow
+         */
+        DESTROYED,
+        /**
+         * The Page was constructed but onCreate has not been called yet
+         */
+        INITIALIZED,
+        /**
+         * The Page was created or its View was unmounted
+         */
+        CREATED,
+        /**
+         * The View of the Page is mounted but not visible
+         */
+        MOUNTED,
+        /**
+         * The Page is visible
+         */
+        VISIBLE,
+        /**
+         * The Page is visible and has focus
+         */
+        FOCUSED;
+
+        public boolean isAtLeast(State state) {
+            return compareTo(state) >= 0;
+        }
+    }
+
+    /**
+     * Notified on the main thread whenever the state changes
+     */
+    public interface Observer {
+        void onStateChanged(PageLifecycleOwner owner, State state);
+    }
+
+    private final PageLifecycleOwner mOwner;
+    private final List<Observer> mObservers = new ArrayList<>();
+    private State mState;
+
+    PageLifecycle(PageLifecycleOwner owner, State state) {
+        mOwner = owner;
+        mState = state;
+    }
+
+    public State getState() {
+        return mState;
+    }
+
+    /**
+     * Adds an observer. It is brought up to the current state right away, one step at a time.
+     * Observers added after the owner was destroyed are ignored.
+     */
+    public void addObserver(Observer observer) {
+        checkNotNull(observer, "observer == null");
+
+        if(mState == State.DESTROYED || mObservers.contains(observer)) return;
+        mObservers.add(observer);
+
+        for (int i = State.CREATED.ordinal(); i <= mState.ordinal(); i++) {
+            observer.onStateChanged(mOwner, State.values()[i]);
+        }
+    }
+
+    public void removeObserver(Observer observer) {
+        mObservers.remove(observer);
+    }
+
+    /**
+     * Moves to the state one step at a time, notifying every observer of each step
+     */
+    void moveTo(State state) {
+        if(mState == State.DESTROYED) return;
+
+        while (mState != state) {
+            State next = State.values()[mState.ordinal() + (state.compareTo(mState) > 0 ? 1 : -1)];
+            if(next == State.INITIALIZED) next = State.DESTROYED;//there is no way back
+
+            mState = next;
+            if(mObservers.isEmpty()) continue;
+
+            //observers may remove themselves
+            for (Observer observer : new ArrayList<>(mObservers)) {
+                observer.onStateChanged(mOwner, next);
+            }
+        }
+
+        if(mState == State.DESTROYED) mObservers.clear();
+    }
+}
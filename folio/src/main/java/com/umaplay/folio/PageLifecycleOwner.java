@@ -0,0 +1,18 @@
+package com.umaplay.folio;
+
+/**
+ * Implemented by Pages and NestedPageManagers to expose their {@link PageLifecycle}
+ *
+ * <pre>
+ *     page.getPageLifecycle().addObserver(new PageLifecycle.Observer() {
+ *         public void onStateChanged(PageLifecycleOwner owner, PageLifecycle.State state) {
+ *             if(state == PageLifecycle.State.VISIBLE) requests.resume();
+ *             else if(state == PageLifecycle.State.MOUNTED) requests.pause();
+ *             else if(state == PageLifecycle.State.DESTROYED) requests.clear();
+ *         }
+ *     });
+ * </pre>
+ */
+public interface PageLifecycleOwner {
+    PageLifecycle getPageLifecycle();
+}
@@ -3,25 +3,40 @@ package com.umaplay.folio;
 import android.animation.Animator;
 import android.animation.AnimatorListenerAdapter;
 import android.animation.AnimatorSet;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Parcel;
 import android.os.Parcelable;
+import android.os.SystemClock;
 import android.util.Log;
 import android.util.SparseArray;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+import android.widget.ImageView;
 
 import com.squareup.leakcanary.RefWatcher;
 import com.umaplay.folio.animator.NoAnimationFactory;
 import com.umaplay.folio.animator.PageAnimatorFactory;
+import com.umaplay.folio.leak.LeakWatchPolicy;
+import com.umaplay.folio.leak.RefWatcherPolicy;
+import com.umaplay.folio.trace.FolioTracer;
+import com.umaplay.folio.trace.FolioTracers;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EmptyStackException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Stack;
-import java.util.UUID;
 
 import static com.umaplay.folio.Preconditions.checkNotNull;
+import static com.umaplay.folio.Preconditions.checkTrue;
 
 /**
  * This manages a navigation stack by representing each item in the mPageStack as a Page, which is
@@ -31,21 +46,55 @@ import static com.umaplay.folio.Preconditions.checkNotNull;
 public class PageManager {
 
     private static final String STACK_TAG = "PageManager.STACK_TAG";
-    private static final String STATE_TAG = "PageManager.STATE_TAG";
+    private static final String ENCODED_STACK_TAG = "PageManager.ENCODED_STACK_TAG";
+    private static final String ENTRY_IDS_TAG = "PageManager.ENTRY_IDS_TAG";
     public static final String VIEW_STATE_KEY = "PageManager.VIEW_STATE_KEY";
     private static final String TAG = "Folio.PageManager";
 
-    private final Stack<Page> mPageStack = new Stack<>();
-    private final Stack<PageFactory> mFactoryStack = new Stack<>();
+    private final PageStack mPageStack = new PageStack();
     private final ViewGroup mPageContainer;
     private final PageStackDelegate mPageStackDelegate;
     private final List<StackChangedListener> listeners = new ArrayList<>();
-    private final RefWatcher mRefWatcher;
-    private Bundle mPageStates = new Bundle();
+    private final LeakWatchPolicy mLeakWatchPolicy;
+    private final RetainedViewCache mRetainedViews = new RetainedViewCache(0) {
+        @Override
+        void onViewDropped(View view) {
+            mLeakWatchPolicy.watch(view);//let's make sure the view is collected
+        }
+    };
+    private final PagePrefetcher mPrefetcher = new PagePrefetcher() {
+        @Override
+        void onDiscard(Page page) {
+            destroyPage(page);
+        }
+    };
+    private final SnapshotCache mSnapshots = new SnapshotCache();
+    private final PagePreloader mPreloader = new PagePreloader();
+    private final PageStateStore mStateStore;
+    private Map<String, Integer> mLastSavedFactorySizes = Collections.emptyMap();
+    private int mSavedStateCount;//since the last onSaveInstanceState
+    private int mLastSavedStateCount;
+    private boolean mMeasureSavedStateBytes;
+    private long mSavedStateBytes;//since the last onSaveInstanceState
+    private long mLastSavedStateBytes;
+    private long mReusedStateCount;
     protected boolean mHasStarted;
     protected boolean mHasResumed;
     private boolean mDeferNotification;
     private boolean mDontAnimatePop = false;
+    private boolean mDestroyed;
+    private long mRestoreTimeToFirstFrame = -1;
+    private TransitionMetricsListener mMetricsListener;
+    private InteractiveBackTransition mInteractiveBack;
+    private MemoryPolicy mMemoryPolicy;
+    private ComponentCallbacks2 mMemoryCallbacks;
+    private long mTrimmedBytes;
+    private int mMaxLivePages = Integer.MAX_VALUE;
+    private AnimatorSet mRunningAnimation;
+    private SnapshotSwap mPendingSwap;//waiting for the View to replace its snapshot
+    private View mPendingLayoutView;
+    private FirstLayoutListener mPendingLayoutListener;
+    private Animator.AnimatorListener mPendingTransitionEnd;
     protected int nesting = 0;
 
     /**
@@ -56,103 +105,336 @@ public class PageManager {
      */
     public PageManager(ViewGroup container, PageStackDelegate delegate, RefWatcher refWatcher,
                        Bundle savedInstanceState) {
-        Log.d(TAG, "onCreate");
+        this(container, delegate, refWatcher, new BundlePageStateStore(), savedInstanceState);
+    }
+
+    /**
+     * Constructor for PageManager instances
+     *
+     * @param container Any ViewGroup mPageContainer for navigation Views. Typically a FrameLayout
+     * @param delegate  A PageStackDelegate responsible for "finishing" the navigation
+     * @param stateStore The PageStateStore holding the saved states of the Pages in the stack
+     */
+    public PageManager(ViewGroup container, PageStackDelegate delegate, RefWatcher refWatcher,
+                       PageStateStore stateStore, Bundle savedInstanceState) {
+        this(container, delegate, new RefWatcherPolicy(refWatcher), stateStore,
+                savedInstanceState);
+    }
+
+    /**
+     * Constructor for PageManager instances
+     *
+     * @param container Any ViewGroup mPageContainer for navigation Views. Typically a FrameLayout
+     * @param delegate  A PageStackDelegate responsible for "finishing" the navigation
+     * @param leakWatchPolicy Watches destroyed Pages and removed Views, see LeakWatchPolicy
+     */
+    public PageManager(ViewGroup container, PageStackDelegate delegate,
+                       LeakWatchPolicy leakWatchPolicy, Bundle savedInstanceState) {
+        this(container, delegate, leakWatchPolicy, new BundlePageStateStore(), savedInstanceState);
+    }
+
+    /**
+     * Constructor for PageManager instances
+     *
+     * @param container Any ViewGroup mPageContainer for navigation Views. Typically a FrameLayout
+     * @param delegate  A PageStackDelegate responsible for "finishing" the navigation
+     * @param leakWatchPolicy Watches destroyed Pages and removed Views, see LeakWatchPolicy
+     * @param stateStore The PageStateStore holding the saved states of the Pages in the stack
+     */
+    public PageManager(ViewGroup container, PageStackDelegate delegate,
+                       LeakWatchPolicy leakWatchPolicy, PageStateStore stateStore,
+                       Bundle savedInstanceState) {
+        FolioTracers.get().onLifecycleEvent(this, "onCreate");
         checkNotNull(container, "container == null");
-        checkNotNull(refWatcher, "refWatcher == null");
+        checkNotNull(leakWatchPolicy, "leakWatchPolicy == null");
+        checkNotNull(stateStore, "stateStore == null");
 
         this.mPageContainer = container;
-        this.mRefWatcher = refWatcher;
+        this.mLeakWatchPolicy = leakWatchPolicy;
         this.mPageStackDelegate = delegate;
+        this.mStateStore = stateStore;
 
         if(savedInstanceState != null) _onRestoreInstanceState(savedInstanceState);
+        else mStateStore.retainStates(Collections.<String>emptySet());//anything left is stale
     }
 
     public NestedPageManager getNestedPageManager(ViewGroup container, Bundle stateBundle) {
-        return new NestedPageManager(container, mRefWatcher, stateBundle, nesting + 1);
+        return new NestedPageManager(container, mLeakWatchPolicy, stateBundle, nesting + 1);
     }
 
-    protected Bundle getPageState(Page page) {
-        Bundle state = mPageStates.getBundle(page.getId());
-        mPageStates.remove(page.getId());//we no longer need it
+    /**
+     * Sets how many Views of the Pages below the top of the stack are kept alive after they are
+     * unmounted. A retained View is re-attached on goBack instead of being created again.
+     * Defaults to 0 which disables retention.
+     *
+     * @param limit the maximum number of retained Views
+     */
+    public void setViewRetentionLimit(int limit) {
+        mRetainedViews.setLimit(limit);
+    }
 
-        return state;
+    /**
+     * @return the maximum number of retained Views
+     */
+    public int getViewRetentionLimit() {
+        return mRetainedViews.getLimit();
     }
 
+    /**
+     * Drops all retained Views. They will be created again when their Pages are mounted.
+     */
+    public void evictRetainedViews() {
+        mRetainedViews.evictAll();
+    }
 
     /**
-     * Pushes a Page, created by the provided PageFactory, onto the navigation stack
+     * Creates the Page of the provided PageFactory and its View on a background thread so that a
+     * later goTo with the same factory instance can mount it immediately.
+     * The Page is created on the calling thread, only onCreateView runs in the background so it
+     * must not touch anything but its own Views. Use {@link Page#inflate} to inflate layouts.
+     * A prefetch that is not used within the time to live is discarded. If goTo comes while the
+     * View is still being created, the prefetch is discarded and a new Page is created as usual.
      *
-     * @param factory responsible for the creation of the next Page in the navigation stack
-     * @return the provided Page 
+     * @param factory the PageFactory that will be passed to goTo
      */
-    public Page goTo(PageFactory factory) {
-        return goTo(factory, new NoAnimationFactory());
+    public void prefetch(PageFactory factory) {
+        checkNotNull(factory, "factory == null");
+        if(mPrefetcher.isPrefetched(factory)) return;
+
+        Page page = createPage(factory, mPageStack.newEntryId(factory));
+        mPrefetcher.prefetch(factory, page, mPageContainer.getContext(), mPageContainer);
     }
 
     /**
-     * Pushes a Page, created by the provided PageFactory, onto the navigation stack and animates
-     * it using the Animator created by the provided PageAnimatorFactory
+     * Discards the prefetch of the provided PageFactory if it has not been used yet
      *
-     * @param factory responsible for the creation of the next Page in the navigation stack
-     * @param pageAnimatorFactory responsible for the creation of an Animator to animate the next View
-     *                        onto and off the navigation stack
-     * @return the provided Page 
+     * @param factory the PageFactory that was passed to prefetch
      */
-    public Page goTo(final PageFactory factory, final PageAnimatorFactory pageAnimatorFactory) {
+    public void cancelPrefetch(PageFactory factory) {
         checkNotNull(factory, "factory == null");
-        checkNotNull(pageAnimatorFactory, "pageAnimatorFactory == null");
+        mPrefetcher.cancel(factory);
+    }
 
+    /**
+     * Sets how long a prefetched Page is kept before it is discarded
+     *
+     * @param millis the time to live in milliseconds
+     */
+    public void setPrefetchTimeToLive(long millis) {
+        mPrefetcher.setTimeToLive(millis);
+    }
 
-        final Page newTopPage = push(factory, pageAnimatorFactory);
-        View newTopView = mountTopPage(newTopPage, null);
+    /**
+     * @return the number of goTo calls which mounted a prefetched View
+     */
+    public int getPrefetchHits() {
+        return mPrefetcher.getHits();
+    }
 
-        if(!mDeferNotification)
-            notifyListeners();
+    /**
+     * @return the number of prefetched Views which were not used because they expired, were
+     * cancelled, failed or were not started in time
+     */
+    public int getPrefetchMisses() {
+        return mPrefetcher.getMisses();
+    }
 
-        newTopView.getViewTreeObserver().addOnGlobalLayoutListener(new FirstLayoutListener(newTopView) {
-            @Override
-            public void onFirstLayout(View topView) {
-                // We have to wait until the View's first layout pass to start the animation,
-                // otherwise the view's width and height would be zero.
+    /**
+     * Sets how much memory the snapshots of unmounted Pages may take. When a Page whose View is
+     * not retained is covered by a single Page, a downscaled snapshot of its View is taken. An
+     * animated goBack to the Page starts right away with the snapshot while the real View is
+     * created on a background thread, the snapshot is replaced once the transition is over. Like
+     * with {@link #prefetch}, onCreateView must then not touch anything but its own Views.
+     * Bitmaps of snapshots which are no longer needed are reused.
+     * Defaults to 0 which disables snapshots.
+     *
+     * @param bytes the maximum number of bytes taken by snapshots
+     */
+    public void setSnapshotMemoryLimit(long bytes) {
+        mSnapshots.setLimit(bytes);
+    }
 
-                final View belowView = peekViewBelow();
-                final Page belowPage = peekBelow();
-                AnimatorListenerAdapter listener = new AnimatorListenerAdapter() {
-                    @Override
-                    public void onAnimationEnd(Animator animator) {
-                        if (belowPage != null) {
-                            unmountPage(belowPage, true);
-                        }
+    public long getSnapshotMemoryLimit() {
+        return mSnapshots.getLimit();
+    }
 
-                        newTopPage.onPageIsVisible();
-                        newTopPage.onPageHasFocus();
-                    }
-                };
+    /**
+     * @return the number of bytes currently taken by snapshots
+     */
+    public long getSnapshotMemoryUsage() {
+        return mSnapshots.size();
+    }
 
-                Animator in = pageAnimatorFactory.createInAnimator(topView);
-                if(belowView != null) {
-                    assert belowPage != null;
+    /**
+     * Sets how many Pages from the top of the stack are kept alive. The Pages below are
+     * hibernated once they have been unmounted: they are destroyed and only their PageFactory and
+     * saved state are kept. When navigation returns to a hibernated Page it is created again and
+     * gets its state back through onRestoreState, just like after the host was recreated.
+     * Defaults to no limit.
+     *
+     * @param maxLivePages the number of live Pages, at least 1
+     */
+    public void setMaxLivePages(int maxLivePages) {
+        checkTrue(maxLivePages > 0, "maxLivePages < 1");
 
-                    Animator out = belowPage.getAnimatorFactory().createOutAnimator(belowView);
-                    startAnimation(listener, in, out);
-                }
-                else {
-                    startAnimation(listener, in);
+        mMaxLivePages = maxLivePages;
+        hibernatePages();
+    }
+
+    public int getMaxLivePages() {
+        return mMaxLivePages;
+    }
+
+    /**
+     * @return the number of Pages in the stack which have been created and not hibernated
+     */
+    public int getLivePageCount() {
+        int count = 0;
+        for (int i = 0; i < size(); i++) {
+            if(mPageStack.get(i).page != null) count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Destroys the unmounted Pages beyond the live Page limit, their states stay in the
+     * PageStateStore
+     */
+    private void hibernatePages() {
+        for (int i = size() - 1 - mMaxLivePages; i >= 0; i--) {
+            PageStack.Entry entry = mPageStack.get(i);
+            if(entry.page == null || entry.page.isMounted()) continue;
+
+            Page page = entry.page;
+            //it may have changed since it was unmounted, e.g. by binding data loaded later
+            savePageState(page);
+            entry.page = null;
+            FolioTracers.get().onLifecycleEvent(page, "onHibernate");
+            destroyPage(page);
+        }
+    }
+
+    /**
+     * Sets the MemoryPolicy which decides what is released when the system is low on memory and
+     * registers for trim memory callbacks of the application. Nested PageManagers are trimmed by
+     * the PageManager of their host Page. Callbacks require API 14, call {@link #trimMemory}
+     * from the host on older versions.
+     *
+     * @param policy the MemoryPolicy or null to stop reacting to memory pressure
+     */
+    public void setMemoryPolicy(MemoryPolicy policy) {
+        mMemoryPolicy = policy;
+
+        if(Build.VERSION.SDK_INT < Build.VERSION_CODES.ICE_CREAM_SANDWICH) return;
+
+        Context application = mPageContainer.getContext().getApplicationContext();
+        if(policy != null && mMemoryCallbacks == null) {
+            mMemoryCallbacks = new ComponentCallbacks2() {
+                @Override
+                public void onTrimMemory(int level) {
+                    trimMemory(level);
                 }
 
+                @Override
+                public void onLowMemory() {
+                    trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+                }
 
-                //fingers crossed! Maybe this bug has been fixed
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
-                    topView.getViewTreeObserver().removeOnGlobalLayoutListener(this);
+                @Override
+                public void onConfigurationChanged(Configuration configuration) {
                 }
-                else {
-                    topView.getViewTreeObserver().removeGlobalOnLayoutListener(this);
+            };
+            application.registerComponentCallbacks(mMemoryCallbacks);
+        }
+        else if(policy == null && mMemoryCallbacks != null) {
+            application.unregisterComponentCallbacks(mMemoryCallbacks);
+            mMemoryCallbacks = null;
+        }
+    }
+
+    public MemoryPolicy getMemoryPolicy() {
+        return mMemoryPolicy;
+    }
+
+    /**
+     * Releases memory according to the MemoryPolicy, or a default one if none is set.
+     * Dropped retained Views and prefetches are not counted since their size is not known.
+     *
+     * @param level the trim memory level, see ComponentCallbacks2
+     * @return the number of bytes the PageStateStore and the Pages reported as released
+     */
+    public long trimMemory(int level) {
+        return trimMemory(level, mMemoryPolicy != null ? mMemoryPolicy : new MemoryPolicy());
+    }
+
+    long trimMemory(int level, MemoryPolicy policy) {
+        FolioTracer tracer = FolioTracers.get();
+        tracer.beginSection(this, "trim");
+        try {
+            long released = 0;
+
+            if(policy.shouldDiscardPrefetches(level)) mPrefetcher.discardPending();
+            if(policy.shouldDropRetainedViews(level)) {
+                mRetainedViews.evictAll();
+                released += mSnapshots.evictAll();
+            }
+            if(policy.shouldTrimStates(level)) {
+                released += mStateStore.onTrimMemory(level);
+            }
+            if(policy.shouldTrimPages(level)) {
+                for (int i = 0; i < size(); i++) {
+                    Page page = mPageStack.get(i).page;
+                    if(page != null) released += page.dispatchTrimMemory(level, policy);
                 }
             }
-        });
 
+            mTrimmedBytes += released;
+            return released;
+        }
+        finally {
+            tracer.endSection();
+        }
+    }
+
+    /**
+     * @return the total number of bytes reported as released by trimMemory
+     */
+    public long getTrimmedBytes() {
+        return mTrimmedBytes;
+    }
 
-        return newTopPage;
+    protected Bundle getPageState(Page page) {
+        //the state stays in the store, it is reused as long as the Page is clean
+        return mStateStore.getState(page.getId());
+    }
+
+
+    /**
+     * Pushes a Page, created by the provided PageFactory, onto the navigation stack
+     *
+     * @param factory responsible for the creation of the next Page in the navigation stack
+     * @return the provided Page 
+     */
+    public Page goTo(PageFactory factory) {
+        return goTo(factory, new NoAnimationFactory());
+    }
+
+    /**
+     * Pushes a Page, created by the provided PageFactory, onto the navigation stack and animates
+     * it using the Animator created by the provided PageAnimatorFactory
+     *
+     * @param factory responsible for the creation of the next Page in the navigation stack
+     * @param pageAnimatorFactory responsible for the creation of an Animator to animate the next View
+     *                        onto and off the navigation stack
+     * @return the provided Page 
+     */
+    public Page goTo(final PageFactory factory, final PageAnimatorFactory pageAnimatorFactory) {
+        checkNotNull(factory, "factory == null");
+        checkNotNull(pageAnimatorFactory, "pageAnimatorFactory == null");
+
+        return commitTransaction(0, Collections.singletonList(factory),
+                Collections.singletonList(pageAnimatorFactory), true);
     }
 
 
@@ -179,14 +461,8 @@ public class PageManager {
         checkNotNull(factory, "factory == null");
         checkNotNull(pageAnimatorFactory, "inPageAnimatorFactory == null");
 
-        while(size() > 0) {
-            Page popped = pop();
-
-            unmountPage(popped, false);
-            destroyPage(popped);
-        }
-
-        return goTo(factory, pageAnimatorFactory);
+        return commitTransaction(size(), Collections.singletonList(factory),
+                Collections.singletonList(pageAnimatorFactory), true);
     }
 
 
@@ -214,103 +490,440 @@ public class PageManager {
         checkNotNull(factory, "factory == null");
         checkNotNull(pageAnimatorFactory, "inPageAnimatorFactory == null");
 
-        while(size() > 1) {
-            Page popped = pop();
+        return commitTransaction(Math.max(size() - 1, 0), Collections.singletonList(factory),
+                Collections.singletonList(pageAnimatorFactory), true);
+    }
+
+    /**
+     * Go to first page in the stack
+     * Removes all but the first Page in the stack
+     * The pages between the top and first are destroyed without being mounted, then the top page
+     * is removed leaving the first.
+     */
+    public void gotoFirst() {
+        if(size() == 1) return;//we are on the first page already
+
+        commitTransaction(size() - 1, Collections.<PageFactory>emptyList(),
+                Collections.<PageAnimatorFactory>emptyList(), false);
+    }
+
+    /**
+     * Pops the top Page off the navigation stack
+     * Transition will be animated
+     *
+     * @return the Page instance that was used for the creation of the top View on the
+     * navigation stack
+     */
+    public Page goBack() {
+        return goBack(true);
+    }
+
+    /**
+     * Pops the top Page off the navigation stack
+     *
+     * @param animateTransition should transition be animated
+     * @return the Page instance that was used for the creation of the top View on the
+     * navigation stack
+     */
+    public Page goBack(boolean animateTransition) {
+        if (!shouldPop()) return null;
+
+        final Page currentTopPage = peek();
+        commitTransaction(1, Collections.<PageFactory>emptyList(),
+                Collections.<PageAnimatorFactory>emptyList(), animateTransition);
+
+        return currentTopPage;
+    }
+
+    /**
+     * Pops every Page above the Page with the provided id.
+     * Transition will be animated
+     *
+     * @param pageId the id of the Page to go back to
+     * @return the Page which is now on top or null if there is no such Page in the stack
+     */
+    public Page goBackTo(String pageId) {
+        return goBackTo(pageId, true);
+    }
+
+    /**
+     * Pops every Page above the Page with the provided id. The Pages in between are destroyed
+     * without being mounted and a single transition runs from the current top to the Page.
+     *
+     * @param pageId the id of the Page to go back to
+     * @param animateTransition should transition be animated
+     * @return the Page which is now on top or null if there is no such Page in the stack
+     */
+    public Page goBackTo(String pageId, boolean animateTransition) {
+        checkNotNull(pageId, "pageId == null");
+
+        return goBackTo(mPageStack.indexOf(pageId), animateTransition);
+    }
+
+    /**
+     * Pops every Page above the topmost Page matching the predicate.
+     * Transition will be animated
+     *
+     * @param predicate selects the Page to go back to
+     * @return the Page which is now on top or null if no Page in the stack matches
+     */
+    public Page goBackTo(PagePredicate predicate) {
+        return goBackTo(predicate, true);
+    }
+
+    /**
+     * Pops every Page above the topmost Page matching the predicate. The Pages in between are
+     * destroyed without being mounted and a single transition runs from the current top to the
+     * Page.
+     *
+     * @param predicate selects the Page to go back to
+     * @param animateTransition should transition be animated
+     * @return the Page which is now on top or null if no Page in the stack matches
+     */
+    public Page goBackTo(PagePredicate predicate, boolean animateTransition) {
+        checkNotNull(predicate, "predicate == null");
+
+        int index = size() - 1;
+        while (index >= 0 && !predicate.apply(mPageStack.get(index).factory)) {
+            index--;
+        }
+
+        return goBackTo(index, animateTransition);
+    }
+
+    private Page goBackTo(int index, boolean animateTransition) {
+        if(index == -1) return null;
+
+        return commitTransaction(size() - 1 - index, Collections.<PageFactory>emptyList(),
+                Collections.<PageAnimatorFactory>emptyList(), animateTransition);
+    }
+
+    /**
+     * Starts a transaction which applies several stack operations with a single transition
+     * between the current top Page and the resulting one
+     *
+     * @return a new PageTransaction for this PageManager
+     */
+    public PageTransaction beginTransaction() {
+        return new PageTransaction(this);
+    }
+
+    /**
+     * Pops the given number of Pages and pushes the given PageFactories. Only the resulting top
+     * Page is created and mounted, the Pages pushed below it are created when they are needed.
+     * The removed Pages are torn down right away except for the current top which is removed
+     * once the transition has finished.
+     *
+     * @param pops the number of Pages to pop before pushing
+     * @param factories the PageFactories to push, the last one becomes the top
+     * @param animatorFactories the PageAnimatorFactory of each pushed PageFactory
+     * @param animateBack whether a transition to a Page which is already in the stack is animated
+     * @return the top Page once the transaction has been applied
+     */
+    Page commitTransaction(int pops, List<PageFactory> factories,
+                           List<PageAnimatorFactory> animatorFactories, boolean animateBack) {
+        checkTrue(pops >= 0 && pops <= size(), "Cannot pop " + pops + " of " + size() + " Pages");
+        checkTrue(size() - pops + factories.size() > 0, "Transaction would leave the stack empty");
+
+        if(pops == 0 && factories.isEmpty()) return peek();
+
+        //navigating during a swipe back wins over the gesture
+        if(mInteractiveBack != null) mInteractiveBack.cancel();
+        //a running transition is finished first so that two never overlap
+        endRunningTransition();
+        mLeakWatchPolicy.onNavigation();
+
+        final boolean forward = !factories.isEmpty();
+        final TransitionMetrics metrics = mMetricsListener != null
+                ? new TransitionMetrics(!forward) : null;
+
+        final Page outPage = size() > 0 ? peek() : null;
+        final View outView = outPage != null ? outPage.getView() : null;
+
+        //the current top is still on screen so it is removed once the transition is done
+        for (int i = 0; i < pops; i++) {
+            Page popped = pop();
+            if(popped != outPage) discardPage(popped);
+        }
+
+        final long mountStart = metrics != null ? System.nanoTime() : 0;
+        final Page inPage;
+        final View inView;
+        SnapshotSwap snapshotSwap = null;
+        if(forward) {
+            int top = factories.size() - 1;
+            for (int i = 0; i < top; i++) {
+                PageFactory factory = factories.get(i);
+                factory.setAnimatorFactory(animatorFactories.get(i));
+                pushLazily(factory);
+            }
+
+            inPage = push(factories.get(top), animatorFactories.get(top));
+            inView = mountTopPage(inPage, null);
+        }
+        else {
+            inPage = peek();
+
+            Bitmap snapshot = null;
+            if(animatesBack(outPage, outView, inPage, animateBack)
+                    && !mRetainedViews.contains(inPage.getId()))
+                snapshot = mSnapshots.take(inPage.getId());
+            if(snapshot != null) {
+                //the transition starts with the snapshot, the view is recreated on the next frame
+                snapshotSwap = new SnapshotSwap(inPage, snapshot);
+                inView = snapshotSwap.mPlaceholder;
+            }
+            else {
+                //recreate the page's view
+                inView = mountBottomPage(inPage, getPageState(inPage));
+            }
+        }
+
+        if(metrics != null)
+            metrics.onMounted(inPage, size(), System.nanoTime() - mountStart);
+
+        if (!mDeferNotification)
+            notifyListeners();
+
+        startTransition(outPage, outView, pops > 0, inPage, inView, forward, animateBack,
+                snapshotSwap, metrics);
+
+        return inPage;
+    }
+
+    /**
+     * @return true if going back from outPage to inPage runs an animation
+     */
+    private static boolean animatesBack(Page outPage, View outView, Page inPage,
+                                        boolean animateBack) {
+        return animateBack && outView != null && !(isInstant(inPage.getAnimatorFactory())
+                && isInstant(outPage.getAnimatorFactory()));
+    }
+
+    private void startTransition(final Page outPage, final View outView, final boolean outPageRemoved,
+                                 final Page inPage, final View inView, boolean forward,
+                                 boolean animateBack, final SnapshotSwap snapshotSwap,
+                                 final TransitionMetrics metrics) {
+        final AnimatorListenerAdapter listener = new AnimatorListenerAdapter() {
+            @Override
+            public void onAnimationStart(Animator animator) {
+                FolioTracers.get().beginAsyncSection(inPage, "transition", hashCode());
+            }
+
+            @Override
+            public void onAnimationEnd(Animator animator) {
+                if(animator != null)
+                    FolioTracers.get().endAsyncSection(inPage, "transition", hashCode());
+                if(animator == mRunningAnimation) mRunningAnimation = null;
+
+                Runnable finish = new Runnable() {
+                    @Override
+                    public void run() {
+                        finishTransition(outPage, outPageRemoved, inPage, metrics);
+                    }
+                };
+                if(snapshotSwap != null) snapshotSwap.swap(finish);
+                else finish.run();
+            }
+        };
+
+        //without animations there is nothing to wait for so we finish in the same frame
+        boolean instant = isInstant(inPage.getAnimatorFactory())
+                && (outView == null || isInstant(outPage.getAnimatorFactory()));
+
+        if(instant || (!forward && !animateBack)) {
+            if(!forward) inPage.getAnimatorFactory().undoOutAnimation(inView);
+            listener.onAnimationEnd(null);
+
+            return;
+        }
+
+        if(!forward) {
+            Animator out = outPage.getAnimatorFactory().createOutAnimator(outView);
+            Animator in = inPage.getAnimatorFactory().createInAnimator(inView);
+            if(metrics != null) metrics.onAnimationStart(mPageContainer.getContext());
+            startAnimation(listener, out, in);
+
+            return;
+        }
+
+        FirstLayoutListener layoutListener = new FirstLayoutListener(inView) {
+            @Override
+            public void onFirstLayout(View topView) {
+                clearPendingLayout();
+
+                // We have to wait until the View's first layout pass to start the animation,
+                // otherwise the view's width and height would be zero.
+                if(metrics != null) {
+                    metrics.onFirstLayout();
+                    metrics.onAnimationStart(mPageContainer.getContext());
+                }
+
+                Animator in = inPage.getAnimatorFactory().createInAnimator(topView);
+                if(outView != null) {
+                    Animator out = outPage.getAnimatorFactory().createOutAnimator(outView);
+                    startAnimation(listener, in, out);
+                }
+                else {
+                    startAnimation(listener, in);
+                }
+
+
+                //fingers crossed! Maybe this bug has been fixed
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                    topView.getViewTreeObserver().removeOnGlobalLayoutListener(this);
+                }
+                else {
+                    topView.getViewTreeObserver().removeGlobalOnLayoutListener(this);
+                }
+            }
+        };
+
+        mPendingLayoutView = inView;
+        mPendingLayoutListener = layoutListener;
+        mPendingTransitionEnd = listener;
+        inView.getViewTreeObserver().addOnGlobalLayoutListener(layoutListener);
+    }
+
+    /**
+     * @return true while a transition is waiting for the first layout of its Page or animating
+     */
+    public boolean isTransitionRunning() {
+        return mRunningAnimation != null || mPendingLayoutListener != null || mPendingSwap != null;
+    }
+
+    /**
+     * Jumps to the end of the running transition. A transition which is still waiting for the
+     * first layout of its Page finishes without being animated.
+     */
+    protected void endRunningTransition() {
+        if(mPendingLayoutListener != null) {
+            View view = mPendingLayoutView;
+            FirstLayoutListener layoutListener = mPendingLayoutListener;
+            Animator.AnimatorListener end = mPendingTransitionEnd;
+            clearPendingLayout();
+
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                view.getViewTreeObserver().removeOnGlobalLayoutListener(layoutListener);
+            }
+            else {
+                view.getViewTreeObserver().removeGlobalOnLayoutListener(layoutListener);
+            }
+            end.onAnimationEnd(null);
+        }
 
-            unmountPage(popped, false);
-            destroyPage(popped);
+        if(mRunningAnimation != null) {
+            //end() runs the end listener which completes the transition
+            mRunningAnimation.end();
+            mRunningAnimation = null;
         }
 
-        return goTo(factory, pageAnimatorFactory);
+        //the View behind the snapshot cannot be waited for, the Page stays unmounted
+        if(mPendingSwap != null) mPendingSwap.abandon();
     }
 
-    /**
-     * Go to first page in the stack
-     * Removes all but the first Page in the stack
-     * We need to be aware that when using this, the page between the top and first are destroyed
-     * first. Then the top page is removed leaving the first.
-     */
-    public void gotoFirst() {
-        if(size() == 1) return;//we are on the first page already
+    private void clearPendingLayout() {
+        mPendingLayoutView = null;
+        mPendingLayoutListener = null;
+        mPendingTransitionEnd = null;
+    }
 
-        for(int i = size() - 2; i > 0; i--) {//we remove all the pages in between first and the top
-            Page popped = remove(i);
 
-            unmountPage(popped, false);
-            destroyPage(popped);
+    private void finishTransition(Page outPage, boolean outPageRemoved, Page inPage,
+                                  TransitionMetrics metrics) {
+        if (outPage != null) {
+            if(outPageRemoved) {
+                unmountPage(outPage, false);
+                destroyPage(outPage);
+            }
+            else {
+                unmountPage(outPage, true);
+            }
         }
 
-        goBack(false);
-    }
+        //unless an abandoned snapshot swap left it without its View
+        if(inPage.isMounted()) {
+            PageTree.dispatchVisible(inPage);
+            PageTree.dispatchFocus(inPage);
+        }
 
-    /**
-     * Pops the top Page off the navigation stack
-     * Transition will be animated
-     *
-     * @return the Page instance that was used for the creation of the top View on the
-     * navigation stack
-     */
-    public Page goBack() {
-        return goBack(true);
+        hibernatePages();
+
+        if(metrics != null) {
+            metrics.onFinished();
+            if(mMetricsListener != null) mMetricsListener.onTransitionMeasured(metrics);
+        }
     }
 
     /**
-     * Pops the top Page off the navigation stack
+     * Starts a back transition driven by a gesture, see {@link SwipeBackFrameLayout}.
+     * The Page below the top is mounted behind it and the Animators of both Pages are seeked
+     * with {@link #updateInteractiveBack} instead of being started. The transition ends with
+     * {@link #finishInteractiveBack}. Requires API 16.
      *
-     * @param animateTransition should transition be animated
-     * @return the Page instance that was used for the creation of the top View on the
-     * navigation stack
+     * @return false if there is no Page to go back to or an interactive back is already running
      */
-    public Page goBack(boolean animateTransition) {
-        if (!shouldPop()) return null;
-
-        final Page pageBelow = peekBelow();
-
-        //shouldn't be null because of shouldPop
-        assert pageBelow != null;
+    public boolean beginInteractiveBack() {
+        if(Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) return false;
+        if(mInteractiveBack != null || isTransitionRunning() || size() < 2) return false;
 
-        //recreate the page's view
-        View belowView = mountBottomPage(pageBelow, getPageState(pageBelow));
+        final Page outPage = peek();
+        final View outView = outPage.getView();
+        if(outView == null) return false;
 
-        final View currentTopView = peekView();
-        final Page currentTopPage = pop();
-        PageAnimatorFactory pageAnimatorFactory = currentTopPage.getAnimatorFactory();
+        mLeakWatchPolicy.onNavigation();
+        final Page inPage = peekBelow();
+        final View inView = mountBottomPage(inPage, getPageState(inPage));
 
-        final Runnable popFinisher = new Runnable() {
+        mInteractiveBack = new InteractiveBackTransition(outView, outPage.getAnimatorFactory(),
+                inView, inPage.getAnimatorFactory()) {
             @Override
-            public void run() {
-                unmountPage(currentTopPage, false);
-                destroyPage(currentTopPage);
+            void onFinished(boolean committed) {
+                mInteractiveBack = null;
 
-                pageBelow.onPageIsVisible();
-                pageBelow.onPageHasFocus();
+                if(committed) {
+                    pop();
+                    if (!mDeferNotification)
+                        notifyListeners();
+
+                    finishTransition(outPage, true, inPage, null);
+                }
+                else {
+                    //the top Page never lost focus, only the Page below has to go again
+                    unmountPage(inPage, true);
+                }
             }
         };
 
+        return true;
+    }
 
-        if (!mDeferNotification)
-            notifyListeners();
-
-        if(animateTransition){
-            Animator out = pageAnimatorFactory.createOutAnimator(currentTopView);
-            AnimatorListenerAdapter listener = new AnimatorListenerAdapter() {
-                @Override
-                public void onAnimationEnd(Animator animator) {
-                    popFinisher.run();
-                }
-            };
-
-            Animator in = pageBelow.getAnimatorFactory().createInAnimator(belowView);
-            startAnimation(listener, out, in);
-        }
-        else {
-            pageBelow.getAnimatorFactory().undoOutAnimation(belowView);
-            popFinisher.run();
-        }
+    /**
+     * Moves the interactive back transition to the provided progress. The Views are updated on
+     * the next frame, so this can be called for every touch event.
+     *
+     * @param fraction 0 when the top Page is fully shown and 1 when it is gone
+     */
+    public void updateInteractiveBack(float fraction) {
+        if(mInteractiveBack != null) mInteractiveBack.setFraction(fraction);
+    }
 
-        return currentTopPage;
+    /**
+     * Lets the interactive back transition settle. If it is committed the top Page is popped once
+     * its Animator has finished, otherwise the Page below is unmounted again.
+     *
+     * @param commit whether to go back
+     */
+    public void finishInteractiveBack(boolean commit) {
+        if(mInteractiveBack != null) mInteractiveBack.settle(commit);
     }
 
+    /**
+     * @return the progress of the interactive back transition or -1 if none is running
+     */
+    public float getInteractiveBackFraction() {
+        return mInteractiveBack != null ? mInteractiveBack.getFraction() : -1f;
+    }
 
     /**
      * @return the Page responsible for creating the top View on the navigation stack
@@ -319,7 +932,7 @@ public class PageManager {
         if (size() == 0) {
             throw new EmptyStackException();
         }
-        return mPageStack.peek();
+        return pageAt(size() - 1);
     }
 
     /**
@@ -333,7 +946,7 @@ public class PageManager {
         if(size() == 1)
             return null;
 
-        return mPageStack.get(size() - 2);
+        return pageAt(size() - 2);
     }
 
     /**
@@ -367,61 +980,108 @@ public class PageManager {
     }
 
     protected Page push(PageFactory factory, PageAnimatorFactory pageAnimatorFactory) {
-        Page page = addPage(factory, pageAnimatorFactory);
+        return push(factory, pageAnimatorFactory, mPageStack.newEntryId(factory));
+    }
 
-        mFactoryStack.push(factory);
-        mPageStack.push(page);
+    private Page push(PageFactory factory, PageAnimatorFactory pageAnimatorFactory, String id) {
+        Page page = addPage(factory, pageAnimatorFactory, id);
+        mPageStack.push(factory, id, page);
 
         return page;
     }
 
-    protected Page add(int index, PageFactory factory, PageAnimatorFactory pageAnimatorFactory) {
-        Page page = addPage(factory, pageAnimatorFactory);
+    /**
+     * Pushes the PageFactory without creating its Page. The Page is created once it is needed.
+     */
+    protected void pushLazily(PageFactory factory) {
+        pushLazily(factory, mPageStack.newEntryId(factory));
+    }
+
+    private void pushLazily(PageFactory factory, String id) {
+        mPageStack.push(factory, id, null);
+    }
+
+    /**
+     * @return the Page at the index, creating it if it was pushed lazily
+     */
+    protected Page pageAt(int index) {
+        PageStack.Entry entry = mPageStack.get(index);
+        if(entry.page == null) {
+            entry.page = addPage(entry.factory, entry.factory.getAnimatorFactory(), entry.id);
+        }
+
+        return entry.page;
+    }
 
-        mFactoryStack.add(index, factory);
-        mPageStack.add(index, page);
+    protected Page add(int index, PageFactory factory, PageAnimatorFactory pageAnimatorFactory) {
+        String id = mPageStack.newEntryId(factory);
+        Page page = addPage(factory, pageAnimatorFactory, id);
+        mPageStack.add(index, factory, id, page);
 
         return page;
     }
 
     protected Page addPage(PageFactory factory, PageAnimatorFactory pageAnimatorFactory) {
-        if(factory.getId() == null) {
-            factory.setId(UUID.randomUUID().toString());
-        }
+        return addPage(factory, pageAnimatorFactory, mPageStack.newEntryId(factory));
+    }
 
-        final Page page = factory.getPage();
+    private Page addPage(PageFactory factory, PageAnimatorFactory pageAnimatorFactory, String id) {
+        Page page = mPrefetcher.takePage(factory);
+        if(page == null) page = createPage(factory, id);
+        else page.setId(id);//the same factory may have been pushed since the prefetch
 
-        page.setPageManager(this);
         page.setAnimatorFactory(pageAnimatorFactory);
         factory.setAnimatorFactory(pageAnimatorFactory);
 
-        page.setId(factory.getId());
+        return page;
+    }
+
+    private Page createPage(PageFactory factory, String id) {
+        final Page page = factory.getPage();
+
+        page.setPageManager(this);
+        page.setId(id);
 
         page.onCreate();
+        mPreloader.start(page, mPageContainer.getContext().getApplicationContext());
 
         return page;
     }
 
+    /**
+     * @return the popped Page or null if it was pushed lazily and never created
+     */
     protected Page pop() {
-        mFactoryStack.pop();//let's remove the factory
-        final Page popped = mPageStack.pop();
+        final PageStack.Entry popped = mPageStack.pop();
+        mStateStore.removeState(popped.id);
+        mSnapshots.remove(popped.id);
 
-        mPageStates.remove(popped.getId());//size - 1 is usually it, but we already popped
-
-        return popped;
+        return popped.page;
     }
 
+    /**
+     * @return the removed Page or null if it was pushed lazily and never created
+     */
     protected Page remove(int index) {
-        mFactoryStack.remove(index);
-        final Page popped = mPageStack.remove(index);
-
-        mPageStates.remove(popped.getId());
+        final PageStack.Entry removed = mPageStack.remove(index);
+        mStateStore.removeState(removed.id);
+        mSnapshots.remove(removed.id);
 
-        return popped;
+        return removed.page;
     }
 
     protected View createView(Page page, Bundle state) {
-        View view = page.onCreateView(mPageContainer.getContext(), mPageContainer);
+        View view = mPrefetcher.takeView(page);
+        if(view == null) {
+            FolioTracer tracer = FolioTracers.get();
+            tracer.beginSection(page, "inflate");
+            try {
+                view = page.onCreateView(mPageContainer.getContext(), mPageContainer);
+            }
+            finally {
+                tracer.endSection();
+            }
+        }
         if(state != null) {
             view.restoreHierarchyState(state.getSparseParcelableArray(VIEW_STATE_KEY));
         }
@@ -430,72 +1090,170 @@ public class PageManager {
     }
 
     protected View mountTopPage(Page page, Bundle state) {
-        View newTopView = createView(page, state);
-        mPageContainer.addView(newTopView);
-        page.onViewMounted(newTopView);
-        if (state != null)
-            page.onRestoreState(state);
-
+        FolioTracer tracer = FolioTracers.get();
+        tracer.beginSection(page, "mount");
+        try {
+            View newTopView = createView(page, state);
+            mPageContainer.addView(newTopView);
+            page.onViewMounted(newTopView);
+            if (state != null) {
+                page.onRestoreState(state);
+                page.markStateClean();//it matches the state in the store
+            }
+            mPreloader.onMounted(page);
+        }
+        finally {
+            tracer.endSection();
+        }
 
         return page.getView();
     }
 
     protected View mountBottomPage(Page page, Bundle state) {
-        View view = createView(page, state);
-        mPageContainer.addView(view, 0);
-        page.onViewMounted(view);
-        if(state != null)
-          page.onRestoreState(state);
+        FolioTracer tracer = FolioTracers.get();
+        tracer.beginSection(page, "mount");
+        try {
+            mSnapshots.remove(page.getId());//the real view is back
+
+            View view = mRetainedViews.take(page.getId());
+            if(view != null) {
+                //the retained view still holds its state so there is nothing to restore
+                mPageContainer.addView(view, 0);
+                page.onViewMounted(view);
+                page.onViewRecycled(view);
+                mPreloader.onMounted(page);
+
+                return page.getView();
+            }
 
-        return page.getView();
+            view = createView(page, state);
+            mPageContainer.addView(view, 0);
+            page.onViewMounted(view);
+            if(state != null) {
+                page.onRestoreState(state);
+                page.markStateClean();//it matches the state in the store
+            }
+            page.onViewRecreated(view);
+            mPreloader.onMounted(page);
+
+            return page.getView();
+        }
+        finally {
+            tracer.endSection();
+        }
     }
 
 
     protected void unmountPage(Page page, boolean canBeRestored) {
-        if(page.hasFocus()) page.onPageLostFocus();
-        if(page.isVisible()) page.onPageIsInvisible();
+        if(page.hasFocus()) PageTree.dispatchLostFocus(page);
+        if(page.isVisible()) PageTree.dispatchInvisible(page);
 
         if(page.isMounted()) {
             View view = page.getView();
 
             if(canBeRestored) {
                 savePageState(page);
+
+                //a retained view is back quicker than a snapshot and only the Page which a
+                //goBack returns to is worth one
+                if(mRetainedViews.getLimit() <= 0 && mSnapshots.getLimit() > 0
+                        && mPageStack.indexOf(page.getId()) == size() - 2)
+                    mSnapshots.capture(page.getId(), view);
             }
 
             page.onViewUnmounted();
             mPageContainer.removeView(view);
-            mRefWatcher.watch(view);//let's make sure the view is collected
+
+            if(!canBeRestored || !mRetainedViews.put(page.getId(), view))
+                mLeakWatchPolicy.watch(view);//let's make sure the view is collected
         }
     }
 
     private void savePageState(Page page) {
-        int pageIndex = mPageStack.indexOf(page);
-        if(pageIndex == -1) throw new IllegalStateException("Cannot save state of " +
+        PageStack.Entry entry = mPageStack.findById(page.getId());
+        if(entry == null || entry.page != page) throw new IllegalStateException("Cannot save state of " +
                 "Page which is not in the stack");
 
-        SparseArray<Parcelable> viewState = new SparseArray<>();
+        //a clean Page still has the state it was last saved with in the store
+        if(!page.isStateDirty()) {
+            mReusedStateCount++;
+            return;
+        }
+
+        SparseArray<Parcelable> viewState;
         View view = page.getView();
-        view.saveHierarchyState(viewState);
+        if(view != null) {
+            viewState = new SparseArray<>();
+            view.saveHierarchyState(viewState);
+        }
+        else {
+            //an unmounted Page keeps the View state it was unmounted with
+            Bundle saved = mStateStore.getState(page.getId());
+            viewState = saved != null ? saved.<Parcelable>getSparseParcelableArray(VIEW_STATE_KEY) : null;
+            if(viewState == null) viewState = new SparseArray<>();
+        }
         Bundle state = new Bundle();
         page.onSaveState(state);
         state.putSparseParcelableArray(VIEW_STATE_KEY, viewState);
-        mPageStates.putBundle(page.getId(), state);
+        mStateStore.putState(page.getId(), state);
+        mSavedStateCount++;
+        if(mMeasureSavedStateBytes) mSavedStateBytes += sizeOf(state);
+        page.markStateClean();
+    }
+
+
+    private static int sizeOf(Bundle state) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.writeBundle(state);
+            return parcel.dataSize();
+        }
+        finally {
+            parcel.recycle();
+        }
     }
 
+    private void discardPage(Page page) {
+        if(page == null) return;//it was never created
+
+        unmountPage(page, false);
+        destroyPage(page);
+    }
 
     private void destroyPage(Page page) {
+        mRetainedViews.remove(page.getId());
+        mPrefetcher.forget(page);
+        mPreloader.cancel(page);
         page.onDestroy();
 
-        mRefWatcher.watch(page);
+        mLeakWatchPolicy.watch(page);
     }
 
     protected void clear() {
-        Page page;
-        while (!mFactoryStack.isEmpty()) {
-            page = pop();
-            unmountPage(page, false);
-            destroyPage(page);
+        while (!mPageStack.isEmpty()) {
+            discardPage(pop());
+        }
+    }
+
+    /**
+     * Destroys every Page but keeps their states in the PageStateStore, the host may be recreated
+     * from the state it saved before
+     */
+    private void destroyPages() {
+        while (!mPageStack.isEmpty()) {
+            discardPage(mPageStack.pop().page);
         }
+        mSnapshots.evictAll();
+    }
+
+    /**
+     * Sets the listener which receives the timings of every transition. Transitions are not
+     * measured while no listener is set.
+     *
+     * @param listener A TransitionMetricsListener or null to stop measuring
+     */
+    public void setTransitionMetricsListener(TransitionMetricsListener listener) {
+        mMetricsListener = listener;
     }
 
     /**
@@ -526,10 +1284,18 @@ public class PageManager {
     }
 
 
+    /**
+     * Only NoAnimationFactory itself is instant, a subclass may create Animators of its own
+     */
+    static boolean isInstant(PageAnimatorFactory pageAnimatorFactory) {
+        return pageAnimatorFactory.getClass() == NoAnimationFactory.class;
+    }
+
     private void startAnimation(Animator.AnimatorListener listener, Animator... animators) {
         AnimatorSet set = new AnimatorSet();
         set.addListener(listener);
         set.playTogether(animators);
+        mRunningAnimation = set;
         set.start();
     }
 
@@ -553,97 +1319,364 @@ public class PageManager {
     }
 
 
+    ViewGroup getPageContainer() {
+        return mPageContainer;
+    }
+
+    /**
+     * @return true if the Bundle holds the state saved by a PageManager
+     */
+    static boolean hasSavedState(Bundle bundle) {
+        return bundle.containsKey(ENCODED_STACK_TAG) || bundle.containsKey(STACK_TAG);
+    }
+
+    /**
+     * @return how deep this PageManager is nested, 0 for the PageManager of the host
+     */
+    public int getNesting() {
+        return nesting;
+    }
+
     protected void onStart() {
-        Log.d(TAG, "onStart: " + nesting);
+        FolioTracers.get().onLifecycleEvent(this, "onStart");
         // The activity is about to become visible.
         mHasStarted = true;
 
         Page page = peek();
-        if(!page.isVisible()) page.onPageIsVisible();
+        if(!page.isVisible()) PageTree.dispatchVisible(page);
     }
 
     protected void onResume() {
-        Log.d(TAG, "onResume: " + nesting);
+        FolioTracers.get().onLifecycleEvent(this, "onResume");
         // The activity has become visible (it is now "resumed").
         mHasResumed = true;
 
         Page page = peek();
-        if(!page.hasFocus()) page.onPageHasFocus();
+        if(!page.hasFocus()) PageTree.dispatchFocus(page);
     }
 
     protected void onPause() {
-        Log.d(TAG, "onPause: " + nesting);
+        FolioTracers.get().onLifecycleEvent(this, "onPause");
         // Another activity is taking focus (this activity is about to be "paused").
         mHasResumed = false;
 
         Page page = peek();
-        if(page.hasFocus()) page.onPageLostFocus();
+        if(page.hasFocus()) PageTree.dispatchLostFocus(page);
     }
 
     /**
      * Saves the PageManager state (an ordered stack of PageFactories) to the provided Bundle using
-     * the provided tag
+     * the provided tag. Factories with a registered {@link FactoryCodec} are written to a compact
+     * Parcel, the others are serialized.
      *
      * @param outState The Bundle in which to save the serialized Stack of ViewFactories
      */
     public void onSaveInstanceState(Bundle outState) {
-        Log.d(TAG, "onSaveInstanceState: " + nesting);
+        FolioTracer tracer = FolioTracers.get();
+        tracer.onLifecycleEvent(this, "onSaveInstanceState");
         checkNotNull(outState, "bundle == null");
 
-        Page page = peek();
-        savePageState(page);
+        tracer.beginSection(this, "save");
+        try {
+            Page page = peek();
+            savePageState(page);
+            mLastSavedStateCount = mSavedStateCount;
+            mSavedStateCount = 0;
+            mLastSavedStateBytes = mSavedStateBytes;
+            mSavedStateBytes = 0;
+
+            List<PageFactory> factories = mPageStack.factories();
+            if(FactoryStackCodec.canEncode(factories)) {
+                int[] sizes = new int[factories.size()];
+                outState.putByteArray(ENCODED_STACK_TAG, FactoryStackCodec.encode(factories, sizes));
+
+                Map<String, Integer> entrySizes = new LinkedHashMap<>();
+                for (int i = 0; i < sizes.length; i++) {
+                    entrySizes.put(mPageStack.get(i).id, sizes[i]);
+                }
+                mLastSavedFactorySizes = Collections.unmodifiableMap(entrySizes);
+            }
+            else {
+                Stack<PageFactory> stack = new Stack<>();//the type older versions expect
+                stack.addAll(factories);
+                outState.putSerializable(STACK_TAG, stack);
+                mLastSavedFactorySizes = Collections.emptyMap();
+            }
+            //only needed when a factory is on the stack more than once
+            ArrayList<String> entryIds = mPageStack.idsIfDistinct();
+            if(entryIds != null) outState.putStringArrayList(ENTRY_IDS_TAG, entryIds);
+            mStateStore.onSaveInstanceState(outState);
+        }
+        finally {
+            tracer.endSection();
+        }
+    }
+
+    /**
+     * Returns the number of Page states saved since the previous onSaveInstanceState, including
+     * the top Page saved by the last one. This is the work done to save the Pages, i.e. the View
+     * hierarchies walked and the Bundles created, not the size of the host's Bundle: a
+     * PageStateStore may still hand every state to the host, e.g. BundlePageStateStore does.
+     *
+     * @return the number of Page states which were saved again
+     */
+    public int getLastSavedStateCount() {
+        return mLastSavedStateCount;
+    }
+
+    /**
+     * Measures the Page states which are saved again, see {@link #getLastSavedStateBytes()}.
+     * Each state is written to a Parcel once more to measure it, so this is off by default.
+     */
+    public void setMeasureSavedStateBytes(boolean measure) {
+        mMeasureSavedStateBytes = measure;
+    }
+
+    /**
+     * Returns the Parcel size of the Page states counted by {@link #getLastSavedStateCount()},
+     * i.e. the bytes which were saved again rather than reused. Only measured after
+     * {@link #setMeasureSavedStateBytes} enabled it, 0 otherwise.
+     *
+     * @return the number of bytes of the Page states which were saved again
+     */
+    public long getLastSavedStateBytes() {
+        return mLastSavedStateBytes;
+    }
+
+    /**
+     * @return the number of times the state of a Page was not saved again because the Page had
+     * not changed since it was last saved, see {@link Page#markStateDirty()}
+     */
+    public long getReusedStateCount() {
+        return mReusedStateCount;
+    }
 
-        outState.putSerializable(STACK_TAG, (Stack) mFactoryStack.clone());
-        outState.putBundle(STATE_TAG, (Bundle) mPageStates.clone());
+    /**
+     * Returns the number of bytes each PageFactory took up in the last onSaveInstanceState, keyed
+     * by the id of its Page in stack order, see {@link Page#getId()}. A factory which is on the
+     * stack more than once has an entry for each of its Pages. Only available when at least one factory in the stack has
+     * a registered {@link FactoryCodec}, otherwise the stack is serialized as a whole and this is
+     * empty.
+     *
+     * @return the encoded size of each PageFactory
+     */
+    public Map<String, Integer> getLastSavedFactorySizes() {
+        return mLastSavedFactorySizes;
     }
 
     protected void onStop() {
-        Log.d(TAG, "onStop: " + nesting);
+        FolioTracers.get().onLifecycleEvent(this, "onStop");
         // The activity is no longer visible (it is now "stopped")
         mHasStarted = false;
 
         Page page = peek();
-        if(page.isVisible()) page.onPageIsInvisible();
+        if(page.isVisible()) PageTree.dispatchInvisible(page);
     }
 
     protected void onDestroy() {
-        Log.d(TAG, "onDestroy: " + nesting);
+        FolioTracers.get().onLifecycleEvent(this, "onDestroy");
         // The host is about to be destroyed.
-        clear();
+        if(mInteractiveBack != null) mInteractiveBack.cancel();
+        endRunningTransition();
+        //a nested PageManager is destroyed as part of its parent's navigation
+        if(nesting == 0) mLeakWatchPolicy.onNavigation();
+        setMemoryPolicy(null);
+        mPrefetcher.cancelAll();
+        mPreloader.cancelAll();
+        destroyPages();
+        mDestroyed = true;
+    }
+
+    /**
+     * @return true once the host destroyed this PageManager, it must not navigate anymore
+     */
+    boolean isDestroyed() {
+        return mDestroyed;
+    }
 
-        mPageStates = null;
+    protected void _onRestoreInstanceState(Bundle bundle) {
+        FolioTracer tracer = FolioTracers.get();
+        tracer.beginSection(this, "restore");
+        try {
+            restoreInstanceState(bundle);
+        }
+        finally {
+            tracer.endSection();
+        }
     }
 
     @SuppressWarnings("unchecked")
-    protected void _onRestoreInstanceState(Bundle bundle) {
+    private void restoreInstanceState(Bundle bundle) {
         checkNotNull(bundle, "bundle == null");
+        final long restoreStart = SystemClock.uptimeMillis();
 
         Stack<PageFactory> savedStack = new Stack<>();
-        savedStack.addAll((List<PageFactory>) bundle.getSerializable(STACK_TAG));
+        if(bundle.containsKey(ENCODED_STACK_TAG))
+            savedStack.addAll(FactoryStackCodec.decode(bundle.getByteArray(ENCODED_STACK_TAG)));
+        else
+            savedStack.addAll((List<PageFactory>) bundle.getSerializable(STACK_TAG));
 
-        mPageStates = bundle.getBundle(STATE_TAG);
+        mStateStore.onRestoreInstanceState(bundle);
         checkNotNull(savedStack, "Bundle doesn't contain PageManager state.");
-        checkNotNull(mPageStates, "Bundle doesn't contain PageManager state.");
 
+        List<String> pageIds = bundle.getStringArrayList(ENTRY_IDS_TAG);
+        if(pageIds == null) {
+            pageIds = new ArrayList<>(savedStack.size());
+            for (PageFactory pageFactory : savedStack) {
+                pageIds.add(pageFactory.getId());
+            }
+        }
+        for (String pageId : pageIds) {
+            PageStack.reserveId(pageId);
+        }
+        mStateStore.retainStates(pageIds);//states of Pages which are gone are orphans
+
+        //only the top Page is created, the others are created when they are needed
         Page topPage = null;
-        for (PageFactory pageFactory : savedStack) {
-            topPage = push(pageFactory, pageFactory.getAnimatorFactory());
+        for (int i = 0; i < savedStack.size(); i++) {
+            PageFactory pageFactory = savedStack.get(i);
+            if(i < savedStack.size() - 1)
+                pushLazily(pageFactory, pageIds.get(i));
+            else
+                topPage = push(pageFactory, pageFactory.getAnimatorFactory(), pageIds.get(i));
         }
 
         if(topPage != null) {
-            mountTopPage(topPage, getPageState(topPage));
+            View topView = mountTopPage(topPage, getPageState(topPage));
+            measureRestore(topView, restoreStart, savedStack.size());
             notifyListeners();
 
-            topPage.onPageIsVisible();
-            topPage.onPageHasFocus();
+            PageTree.dispatchVisible(topPage);
+            PageTree.dispatchFocus(topPage);
         }
         else
             notifyListeners();
     }
 
+    private void measureRestore(final View topView, final long restoreStart, final int stackSize) {
+        topView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                topView.getViewTreeObserver().removeOnPreDrawListener(this);
+
+                mRestoreTimeToFirstFrame = SystemClock.uptimeMillis() - restoreStart;
+                if(Log.isLoggable(TAG, Log.DEBUG)) {
+                    Log.d(TAG, "restored " + stackSize + " pages, first frame after "
+                            + mRestoreTimeToFirstFrame + "ms");
+                }
+
+                return true;
+            }
+        });
+    }
+
+    /**
+     * @return the time in milliseconds from the start of the last state restore until the first
+     * frame of the top Page was drawn or -1 if it has not been measured
+     */
+    public long getRestoreTimeToFirstFrame() {
+        return mRestoreTimeToFirstFrame;
+    }
+
+
+    /**
+     * Shows the snapshot of a Page in place of its View while a transition runs. The real View is
+     * created on a background thread, mounted behind the snapshot once it is delivered and
+     * replaces it once the transition is over. A transition which ends before the View is
+     * delivered keeps the snapshot on screen and finishes once it is, the main thread never waits
+     * for it.
+     */
+    private final class SnapshotSwap implements Runnable {
+        private final Page mPage;
+        private final ImageView mPlaceholder;
+        private final Bitmap mSnapshot;
+        private View mView;
+        private Runnable mOnSwapped;
+        private boolean mAbandoned;
+
+        SnapshotSwap(Page page, Bitmap snapshot) {
+            mPage = page;
+            mSnapshot = snapshot;
+            mPlaceholder = new ImageView(mPageContainer.getContext());
+            mPlaceholder.setScaleType(ImageView.ScaleType.FIT_XY);
+            mPlaceholder.setImageBitmap(snapshot);
+
+            mPageContainer.addView(mPlaceholder, 0, new ViewGroup.LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+            mPrefetcher.prefetchView(page, mPageContainer.getContext(), mPageContainer, this);
+        }
+
+        /**
+         * Called on the main thread once the View is created in the background
+         */
+        @Override
+        public void run() {
+            //an abandoned Page takes the View once it is mounted again
+            if(mAbandoned) return;
+
+            mount();
+            if(mOnSwapped != null) complete();
+        }
+
+        private void mount() {
+            if(mView != null) return;
+
+            mView = mountBottomPage(mPage, getPageState(mPage));
+            mView.setVisibility(View.INVISIBLE);//it is laid out behind the snapshot
+        }
+
+        /**
+         * Replaces the snapshot with the View once the transition is over, or as soon as the View
+         * is delivered if it is still being created
+         *
+         * @param onSwapped finishes the transition
+         */
+        void swap(Runnable onSwapped) {
+            mOnSwapped = onSwapped;
+            if(mView == null && mPrefetcher.isCreatingView(mPage)) {
+                mPendingSwap = this;
+                return;
+            }
+
+            //a View which has not started yet is created here instead
+            mount();
+            complete();
+        }
+
+        /**
+         * Finishes a pending swap without the View, the Page is left unmounted
+         */
+        void abandon() {
+            mAbandoned = true;
+            removePlaceholder();
+            runOnSwapped();
+        }
+
+        private void complete() {
+            mView.setVisibility(View.VISIBLE);
+            removePlaceholder();
+            runOnSwapped();
+        }
+
+        private void removePlaceholder() {
+            mPageContainer.removeView(mPlaceholder);
+            mPlaceholder.setImageBitmap(null);
+            mSnapshots.offer(mSnapshot);
+        }
+
+        private void runOnSwapped() {
+            if(mPendingSwap == this) mPendingSwap = null;
+
+            Runnable onSwapped = mOnSwapped;
+            mOnSwapped = null;
+            onSwapped.run();
+        }
+    }
+
+    public static class NestedPageManager extends PageManager implements PageLifecycleOwner {
+        private final PageLifecycle mLifecycle =
+                new PageLifecycle(this, PageLifecycle.State.MOUNTED);
 
-    public static class NestedPageManager extends PageManager {
-        private static final String TAG = "Folio.NestedPageManager";
         /**
          * Constructor for child PageManager instances
          * Used internally to give Pages the ability to have nested pages
@@ -651,36 +1684,85 @@ public class PageManager {
          * @param container Any ViewGroup mPageContainer for navigation Views. Typically a FrameLayout
          * @param stateBundle
          */
-        private NestedPageManager(ViewGroup container, RefWatcher refWatcher, Bundle stateBundle, int
-                nesting) {
-            super(container, null, refWatcher, stateBundle);
+        private NestedPageManager(ViewGroup container, LeakWatchPolicy leakWatchPolicy,
+                                  Bundle stateBundle, int nesting) {
+            super(container, null, leakWatchPolicy, stateBundle);
 
-            Log.d(TAG, "onCreateNested: " + nesting);
+            FolioTracers.get().onLifecycleEvent(this, "onCreateNested");
 
             this.nesting = nesting;
         }
 
 
+        @Override
         protected void onStart() {
-            Log.d(TAG, "onStart: " + nesting);
-            // The activity is about to become visible.
-            mHasStarted = true;
+            setStarted(true);
 
             if(size() > 0) {
                 Page page = peek();
-                if (!page.isVisible()) page.onPageIsVisible();
+                if (!page.isVisible()) PageTree.dispatchVisible(page);
             }
         }
 
+        @Override
         protected void onResume() {
-            Log.d(TAG, "onResume: " + nesting);
-            // The activity has become visible (it is now "resumed").
-            mHasResumed = true;
+            setResumed(true);
+
+            if(size() > 0) {
+                Page page = peek();
+                if (!page.hasFocus()) PageTree.dispatchFocus(page);
+            }
+        }
+
+        @Override
+        protected void onPause() {
+            if(size() > 0) {
+                Page page = peek();
+                if (page.hasFocus()) PageTree.dispatchLostFocus(page);
+            }
+
+            setResumed(false);
+        }
 
+        @Override
+        protected void onStop() {
             if(size() > 0) {
                 Page page = peek();
-                if (!page.hasFocus()) page.onPageHasFocus();
+                if (page.isVisible()) PageTree.dispatchInvisible(page);
             }
+
+            setStarted(false);
+        }
+
+        /**
+         * Updates the state without dispatching to the top Page, {@link PageTree} does that
+         */
+        void setStarted(boolean started) {
+            FolioTracers.get().onLifecycleEvent(this, started ? "onStart" : "onStop");
+            mHasStarted = started;
+            mLifecycle.moveTo(started ? PageLifecycle.State.VISIBLE
+                    : PageLifecycle.State.MOUNTED);
+        }
+
+        void setResumed(boolean resumed) {
+            FolioTracers.get().onLifecycleEvent(this, resumed ? "onResume" : "onPause");
+            mHasResumed = resumed;
+            mLifecycle.moveTo(resumed ? PageLifecycle.State.FOCUSED
+                    : PageLifecycle.State.VISIBLE);
+        }
+
+        @Override
+        protected void onDestroy() {
+            super.onDestroy();
+            mLifecycle.moveTo(PageLifecycle.State.DESTROYED);
+        }
+
+        /**
+         * @return the lifecycle of this NestedPageManager, which follows the Page holding it
+         */
+        @Override
+        public PageLifecycle getPageLifecycle() {
+            return mLifecycle;
         }
 
 
@@ -0,0 +1,13 @@
+package com.umaplay.folio;
+
+/**
+ * Predicate selecting a Page in the navigation stack. It is applied to the PageFactory because the
+ * Pages below the top may not have been created yet.
+ */
+public interface PagePredicate {
+    /**
+     * @param factory the PageFactory of a Page in the stack
+     * @return true if it is the Page which is looked for
+     */
+    boolean apply(PageFactory factory);
+}
@@ -0,0 +1,258 @@
+package com.umaplay.folio;
+
+import android.content.Context;
+import android.os.Process;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+/**
+ * Creates the Views of Pages which are likely to be navigated to next on a background thread.
+ * All methods must be called on the main thread, only the View creation runs in the background.
+ */
+abstract class PagePrefetcher {
+
+    private static final String TAG = "Folio.PagePrefetcher";
+    static final long DEFAULT_TIME_TO_LIVE = 5000;
+
+    private final Map<PageFactory, Prefetch> mPending = new IdentityHashMap<>();
+    private final Map<Page, Prefetch> mConsumed = new IdentityHashMap<>();
+    private long mTimeToLive = DEFAULT_TIME_TO_LIVE;
+    private int mHits;
+    private int mMisses;
+
+    /**
+     * Called on the main thread when a prefetched Page is discarded without being used
+     *
+     * @param page the Page that was created for the prefetch
+     */
+    abstract void onDiscard(Page page);
+
+    boolean isPrefetched(PageFactory factory) {
+        return mPending.containsKey(factory);
+    }
+
+    void prefetch(PageFactory factory, Page page, Context context, ViewGroup container) {
+        Prefetch prefetch = new Prefetch(factory, page, context, container, null);
+        mPending.put(factory, prefetch);
+
+        prefetch.mFuture = FolioExecutors.background().submit(prefetch);
+        FolioExecutors.main().postDelayed(prefetch.mExpiry, mTimeToLive);
+    }
+
+    /**
+     * Starts creating the View of a Page which is on the stack already, while a transition shows
+     * its snapshot. The View is taken with takeView like the View of a prefetched Page. It is
+     * created at the default priority since the end of the transition waits for it.
+     * Not counted as a hit or a miss.
+     *
+     * @param onCreated run on the main thread once the View is created, unless it was taken
+     */
+    void prefetchView(Page page, Context context, ViewGroup container, Runnable onCreated) {
+        Prefetch prefetch = new Prefetch(null, page, context, container, onCreated);
+        mConsumed.put(page, prefetch);
+
+        prefetch.mFuture = FolioExecutors.background().submit(prefetch);
+    }
+
+    /**
+     * Returns the prefetched Page for the factory. A Page whose View is still being created is
+     * discarded instead: waiting for it would block the main thread on a background priority
+     * thread, and its View cannot be created on the main thread at the same time.
+     *
+     * @return the prefetched Page or null if it has not been prefetched or is still in progress
+     */
+    Page takePage(PageFactory factory) {
+        Prefetch prefetch = mPending.remove(factory);
+        if (prefetch == null) return null;
+
+        //a prefetch which has not started yet is cancelled and its View created on the main thread
+        if (!prefetch.mFuture.isDone() && !prefetch.mFuture.cancel(false)) {
+            discard(prefetch);
+            return null;
+        }
+
+        FolioExecutors.main().removeCallbacks(prefetch.mExpiry);
+        mConsumed.put(prefetch.mPage, prefetch);
+
+        return prefetch.mPage;
+    }
+
+    /**
+     * Cancels the View creation of a Page passed to prefetchView unless it has started already
+     *
+     * @return true if the View is being created, it is then delivered to the onCreated callback
+     */
+    boolean isCreatingView(Page page) {
+        Prefetch prefetch = mConsumed.get(page);
+
+        return prefetch != null && !prefetch.mFuture.isDone() && !prefetch.mFuture.cancel(false);
+    }
+
+    /**
+     * Returns the prefetched View of a Page obtained from takePage or passed to prefetchView.
+     * Never waits: a View which is not created yet is cancelled, or dropped if it is being created
+     * already. takePage only hands out Pages whose prefetch is done or was cancelled and a
+     * snapshot waits for its View with isCreatingView, so the latter only happens to a Page which
+     * is mounted again before the View of an interrupted snapshot was delivered.
+     *
+     * @return the prefetched View or null if it is not available
+     */
+    View takeView(Page page) {
+        Prefetch prefetch = mConsumed.remove(page);
+        if (prefetch == null) return null;
+
+        boolean counted = prefetch.mFactory != null;
+        if (!prefetch.mFuture.isDone()) {
+            prefetch.mFuture.cancel(false);
+            if (counted) mMisses++;
+            return null;
+        }
+
+        //null if it was cancelled or onCreateView threw
+        View view = prefetch.mView;
+        if (counted) {
+            if (view != null) mHits++;
+            else mMisses++;
+        }
+
+        return view;
+    }
+
+    /**
+     * Forgets a Page obtained from takePage or passed to prefetchView which is destroyed before
+     * its View was taken
+     */
+    void forget(Page page) {
+        Prefetch prefetch = mConsumed.remove(page);
+        if (prefetch != null) {
+            prefetch.mFuture.cancel(false);
+            if (prefetch.mFactory != null) mMisses++;
+        }
+    }
+
+    void cancel(PageFactory factory) {
+        Prefetch prefetch = mPending.remove(factory);
+        if (prefetch != null) discard(prefetch);
+    }
+
+    void cancelAll() {
+        discardPending();
+
+        for (Page page : new ArrayList<>(mConsumed.keySet())) {
+            forget(page);
+        }
+    }
+
+    /**
+     * Discards the prefetches which have not been taken by a goTo yet
+     */
+    void discardPending() {
+        for (Prefetch prefetch : new ArrayList<>(mPending.values())) {
+            discard(prefetch);
+        }
+        mPending.clear();
+    }
+
+    void setTimeToLive(long timeToLive) {
+        mTimeToLive = timeToLive;
+    }
+
+    long getTimeToLive() {
+        return mTimeToLive;
+    }
+
+    int getHits() {
+        return mHits;
+    }
+
+    int getMisses() {
+        return mMisses;
+    }
+
+    private void discard(Prefetch prefetch) {
+        FolioExecutors.main().removeCallbacks(prefetch.mExpiry);
+        prefetch.mDiscarded = true;
+        mMisses++;
+
+        //if the View is being created we release the Page once it is done
+        if (prefetch.mFuture.cancel(false) || prefetch.mFinished) {
+            release(prefetch);
+        }
+    }
+
+    private void release(Prefetch prefetch) {
+        if (prefetch.mReleased) return;
+
+        prefetch.mReleased = true;
+        onDiscard(prefetch.mPage);
+    }
+
+    private class Prefetch implements Callable<View> {
+        private final PageFactory mFactory;
+        private final Page mPage;
+        private final Context mContext;
+        private final ViewGroup mContainer;
+        private final LayoutInflater mInflater;
+        private final Runnable mOnCreated;
+        private Future<View> mFuture;
+        private volatile View mView;
+        private boolean mFinished;
+        private boolean mDiscarded;
+        private boolean mReleased;
+
+        private final Runnable mExpiry = new Runnable() {
+            @Override
+            public void run() {
+                cancel(mFactory);
+            }
+        };
+
+        private final Runnable mFinisher = new Runnable() {
+            @Override
+            public void run() {
+                mFinished = true;
+                if (mDiscarded) release(Prefetch.this);
+                else if (mOnCreated != null && mConsumed.get(mPage) == Prefetch.this)
+                    mOnCreated.run();//it has not been taken yet
+            }
+        };
+
+        Prefetch(PageFactory factory, Page page, Context context, ViewGroup container,
+                 Runnable onCreated) {
+            mFactory = factory;
+            mPage = page;
+            mContext = context;
+            mContainer = container;
+            mOnCreated = onCreated;
+            //LayoutInflater instances are not thread safe so the Page gets its own
+            mInflater = LayoutInflater.from(context).cloneInContext(context);
+        }
+
+        @Override
+        public View call() throws Exception {
+            boolean awaited = mFactory == null;//see prefetchView
+            if (awaited) Process.setThreadPriority(Process.THREAD_PRIORITY_DEFAULT);
+            try {
+                mPage.setLayoutInflater(mInflater);
+                return mView = mPage.onCreateView(mContext, mContainer);
+            }
+            catch (RuntimeException e) {
+                Log.w(TAG, "Prefetching " + mPage.getClass().getName() + " failed", e);
+                throw e;
+            }
+            finally {
+                mPage.setLayoutInflater(null);
+                if (awaited) Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                FolioExecutors.main().post(mFinisher);
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.umaplay.folio;
+
+import android.content.Context;
+
+import com.umaplay.folio.trace.FolioTracer;
+import com.umaplay.folio.trace.FolioTracers;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the onPreload stage of {@link Preloadable} Pages on a background thread and delivers the
+ * results once the Pages are mounted. All methods must be called on the main thread.
+ */
+class PagePreloader {
+
+    private final Map<Page, Preload> mPreloads = new IdentityHashMap<>();
+
+    /**
+     * Starts the preload if the Page is Preloadable
+     */
+    void start(Page page, Context applicationContext) {
+        if (!(page instanceof Preloadable) || mPreloads.containsKey(page)) return;
+
+        Preload preload = new Preload(page, new PreloadContext(applicationContext));
+        mPreloads.put(page, preload);
+        preload.mFuture = FolioExecutors.background().submit(preload.mLoader);
+    }
+
+    /**
+     * Delivers the result of the Page's preload if it is done
+     */
+    void onMounted(Page page) {
+        Preload preload = mPreloads.get(page);
+        if (preload != null && preload.mDone) deliver(preload);
+    }
+
+    void cancel(Page page) {
+        Preload preload = mPreloads.remove(page);
+        if (preload == null) return;
+
+        preload.mContext.cancel();
+        preload.mFuture.cancel(true);
+    }
+
+    void cancelAll() {
+        for (Page page : new ArrayList<>(mPreloads.keySet())) {
+            cancel(page);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void deliver(Preload preload) {
+        mPreloads.remove(preload.mPage);
+
+        Preloadable<Object> preloadable = (Preloadable<Object>) preload.mPage;
+        if (preload.mError != null) preloadable.onPreloadFailed(preload.mError);
+        else preloadable.onPreloaded(preload.mResult);
+    }
+
+    private class Preload {
+        private final Page mPage;
+        private final PreloadContext mContext;
+        private Future<?> mFuture;
+        //written in the background, read on the main thread after mDeliverer was posted
+        private Object mResult;
+        private Exception mError;
+        private boolean mDone;
+
+        private final Runnable mLoader = new Runnable() {
+            @Override
+            public void run() {
+                FolioTracer tracer = FolioTracers.get();
+                tracer.beginSection(mPage, "preload");
+                try {
+                    mResult = ((Preloadable<?>) mPage).onPreload(mContext);
+                }
+                catch (Exception e) {
+                    mError = e;
+                }
+                finally {
+                    tracer.endSection();
+                }
+
+                if (!mContext.isCancelled()) FolioExecutors.main().post(mDeliverer);
+            }
+        };
+
+        private final Runnable mDeliverer = new Runnable() {
+            @Override
+            public void run() {
+                if (mPreloads.get(mPage) != Preload.this) return;//cancelled in the meantime
+
+                mDone = true;
+                if (mPage.isMounted()) deliver(Preload.this);
+            }
+        };
+
+        Preload(Page page, PreloadContext context) {
+            mPage = page;
+            mContext = context;
+        }
+    }
+}
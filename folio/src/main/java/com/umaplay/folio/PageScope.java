@@ -0,0 +1,218 @@
+package com.umaplay.folio;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs background work on behalf of a Page, see {@link Page#scope()}. Tasks run on the shared
+ * background executor of the framework and their results are delivered on the main thread only
+ * while the Page is alive. When the Page is destroyed all unfinished tasks are cancelled and
+ * interrupted, so callbacks do not keep it from being collected.
+ *
+ * Tasks which have not started yet can be held back while the Page is invisible, see
+ * {@link #setPauseWhenInvisible}. Must be used on the main thread.
+ */
+public final class PageScope {
+
+    /**
+     * Receives the outcome of a task on the main thread
+     *
+     * @param <T> the type of the result
+     */
+    public interface Callback<T> {
+        void onResult(T result);
+
+        void onError(Exception error);
+    }
+
+    private final Object mLock = new Object();
+    private final Set<Task<?>> mTasks = new HashSet<>();
+    private final List<Task<?>> mParked = new ArrayList<>();
+    private boolean mPauseWhenInvisible;
+    private boolean mPaused;
+    private boolean mDestroyed;
+    private int mCancelledCount;
+    private int mDroppedCount;
+
+    PageScope() {
+    }
+
+    /**
+     * Runs the task in the background and delivers its result to the callback on the main thread
+     *
+     * @param callback receives the result or null if it is not needed
+     */
+    public <T> void submit(Callable<T> task, Callback<T> callback) {
+        Preconditions.checkNotNull(task, "task == null");
+
+        Task<T> scoped = new Task<>(task, callback);
+        synchronized (mLock) {
+            if (mDestroyed) {
+                mCancelledCount++;
+                return;
+            }
+
+            mTasks.add(scoped);
+            if (mPaused) mParked.add(scoped);
+            else scoped.mFuture = FolioExecutors.background().submit(scoped);
+        }
+    }
+
+    /**
+     * Runs the task in the background
+     */
+    public void execute(Runnable task) {
+        Preconditions.checkNotNull(task, "task == null");
+
+        submit(Executors.callable(task), null);
+    }
+
+    /**
+     * Whether tasks which have not started yet wait while the Page is invisible. Tasks which are
+     * running are not affected. Defaults to false.
+     */
+    public void setPauseWhenInvisible(boolean pauseWhenInvisible) {
+        mPauseWhenInvisible = pauseWhenInvisible;
+    }
+
+    public boolean isPauseWhenInvisible() {
+        return mPauseWhenInvisible;
+    }
+
+    /**
+     * @return true once the Page has been destroyed
+     */
+    public boolean isDestroyed() {
+        synchronized (mLock) {
+            return mDestroyed;
+        }
+    }
+
+    /**
+     * @return the number of tasks which were cancelled before they finished, each task is counted
+     * either here or as dropped
+     */
+    public int getCancelledCount() {
+        synchronized (mLock) {
+            return mCancelledCount;
+        }
+    }
+
+    /**
+     * @return the number of results which were dropped because the Page had been destroyed
+     */
+    public int getDroppedCount() {
+        synchronized (mLock) {
+            return mDroppedCount;
+        }
+    }
+
+    /**
+     * @return the number of tasks which have not finished yet
+     */
+    public int getActiveCount() {
+        synchronized (mLock) {
+            return mTasks.size();
+        }
+    }
+
+    void pause() {
+        if (!mPauseWhenInvisible) return;
+
+        synchronized (mLock) {
+            mPaused = true;
+        }
+    }
+
+    void resume() {
+        synchronized (mLock) {
+            mPaused = false;
+            if (mDestroyed) return;
+
+            for (Task<?> task : mParked) {
+                task.mFuture = FolioExecutors.background().submit(task);
+            }
+            mParked.clear();
+        }
+    }
+
+    void destroy() {
+        synchronized (mLock) {
+            mDestroyed = true;
+
+            for (Task<?> task : mTasks) {
+                if (task.mFinished) {
+                    mDroppedCount++;//its result is posted already
+                    continue;
+                }
+
+                task.mCancelled = true;
+                if (task.mFuture != null) task.mFuture.cancel(true);
+                mCancelledCount++;
+            }
+            mTasks.clear();
+            mParked.clear();
+        }
+    }
+
+    private final class Task<T> implements Runnable {
+        private final Callable<T> mCallable;
+        private final Callback<T> mCallback;
+        //guarded by mLock
+        private Future<?> mFuture;
+        private boolean mCancelled;
+        private boolean mFinished;
+        //written in the background, read on the main thread after mDeliverer was posted
+        private T mResult;
+        private Exception mError;
+
+        private final Runnable mDeliverer = new Runnable() {
+            @Override
+            public void run() {
+                synchronized (mLock) {
+                    //the Page is gone, destroy counted the task
+                    if (!mTasks.remove(Task.this)) return;
+                }
+
+                if (mCallback == null) return;
+                if (mError != null) mCallback.onError(mError);
+                else mCallback.onResult(mResult);
+            }
+        };
+
+        Task(Callable<T> callable, Callback<T> callback) {
+            mCallable = callable;
+            mCallback = callback;
+        }
+
+        @Override
+        public void run() {
+            synchronized (mLock) {
+                if (mCancelled) return;
+                if (mPaused) {
+                    //it waits for the Page to become visible again
+                    mParked.add(this);
+                    return;
+                }
+            }
+
+            try {
+                mResult = mCallable.call();
+            }
+            catch (Exception e) {
+                mError = e;
+            }
+
+            synchronized (mLock) {
+                if (mCancelled) return;//counted as cancelled, the result is not needed
+                mFinished = true;
+            }
+            FolioExecutors.main().post(mDeliverer);
+        }
+    }
+}
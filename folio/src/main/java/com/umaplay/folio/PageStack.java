@@ -0,0 +1,187 @@
+package com.umaplay.folio;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EmptyStackException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The navigation stack of a PageManager. Each entry keeps a PageFactory together with its Page,
+ * which is null while the Page has not been created, and is found by its id in constant time.
+ * The id of an entry is the id of its factory unless the same factory is on the stack more than
+ * once. Not synchronized, it is only used on the main thread.
+ */
+final class PageStack {
+
+    private static long sNextId;
+
+    private Entry[] mEntries = new Entry[8];
+    private int mSize;
+    private final Map<String, Integer> mIndices = new HashMap<>();
+
+    /**
+     * Assigns a new id to the factory unless it has one already. Ids are a counter in base 36,
+     * which is a lot shorter than a UUID and does not need a SecureRandom.
+     */
+    static void assignId(PageFactory factory) {
+        if(factory.getId() == null) {
+            factory.setId(Long.toString(sNextId++, Character.MAX_RADIX));
+        }
+    }
+
+    /**
+     * Makes sure that ids assigned from now on do not collide with a restored one. Ids of older
+     * versions of Folio were UUIDs, they can never collide so they are ignored.
+     */
+    static void reserveId(String id) {
+        if(id == null || id.length() > 13) return;//a base 36 long has at most 13 digits
+
+        try {
+            long value = Long.parseLong(id, Character.MAX_RADIX);
+            if(value >= sNextId) sNextId = value + 1;
+        }
+        catch (NumberFormatException e) {
+            //not one of ours
+        }
+    }
+
+    /**
+     * Returns the id for a new entry of the factory: the factory id or, if an entry with that id
+     * is on the stack already, e.g. the same factory instance is pushed twice, a new one.
+     */
+    String newEntryId(PageFactory factory) {
+        assignId(factory);
+        if(!mIndices.containsKey(factory.getId())) return factory.getId();
+
+        return Long.toString(sNextId++, Character.MAX_RADIX);
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    Entry get(int index) {
+        checkIndex(index, mSize);
+        return mEntries[index];
+    }
+
+    Entry peek() {
+        if(mSize == 0) throw new EmptyStackException();
+        return mEntries[mSize - 1];
+    }
+
+    /**
+     * @return the index of the entry with the id or -1 if there is none
+     */
+    int indexOf(String id) {
+        Integer index = mIndices.get(id);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * @return the entry with the id or null if there is none
+     */
+    Entry findById(String id) {
+        int index = indexOf(id);
+        return index != -1 ? mEntries[index] : null;
+    }
+
+    Entry push(PageFactory factory, String id, Page page) {
+        return add(mSize, factory, id, page);
+    }
+
+    /**
+     * @param id the id of the entry, see {@link #newEntryId}
+     */
+    Entry add(int index, PageFactory factory, String id, Page page) {
+        checkIndex(index, mSize + 1);
+        if(mIndices.containsKey(id))
+            throw new IllegalStateException("Page " + id + " is already in the stack");
+
+        if(mSize == mEntries.length) mEntries = Arrays.copyOf(mEntries, mSize * 2);
+
+        Entry entry = new Entry(factory, id, page);
+        System.arraycopy(mEntries, index, mEntries, index + 1, mSize - index);
+        mEntries[index] = entry;
+        mSize++;
+        reindexFrom(index);
+
+        return entry;
+    }
+
+    Entry pop() {
+        if(mSize == 0) throw new EmptyStackException();
+        return remove(mSize - 1);
+    }
+
+    Entry remove(int index) {
+        checkIndex(index, mSize);
+
+        Entry entry = mEntries[index];
+        System.arraycopy(mEntries, index + 1, mEntries, index, mSize - index - 1);
+        mEntries[--mSize] = null;
+        mIndices.remove(entry.id);
+        reindexFrom(index);
+
+        return entry;
+    }
+
+    /**
+     * @return the factories from the bottom to the top of the stack
+     */
+    List<PageFactory> factories() {
+        List<PageFactory> factories = new ArrayList<>(mSize);
+        for (int i = 0; i < mSize; i++) {
+            factories.add(mEntries[i].factory);
+        }
+
+        return factories;
+    }
+
+    /**
+     * @return the ids of the entries from the bottom to the top of the stack or null if each of
+     * them is the id of its factory
+     */
+    ArrayList<String> idsIfDistinct() {
+        for (int i = 0; i < mSize; i++) {
+            if(!mEntries[i].id.equals(mEntries[i].factory.getId())) {
+                ArrayList<String> ids = new ArrayList<>(mSize);
+                for (int j = 0; j < mSize; j++) {
+                    ids.add(mEntries[j].id);
+                }
+                return ids;
+            }
+        }
+
+        return null;
+    }
+
+    private void reindexFrom(int index) {
+        for (int i = index; i < mSize; i++) {
+            mIndices.put(mEntries[i].id, i);
+        }
+    }
+
+    private static void checkIndex(int index, int size) {
+        if(index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+
+    static final class Entry {
+        final PageFactory factory;
+        final String id;
+        Page page;
+
+        Entry(PageFactory factory, String id, Page page) {
+            this.factory = factory;
+            this.id = id;
+            this.page = page;
+        }
+    }
+}
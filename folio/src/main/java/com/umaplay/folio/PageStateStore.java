@@ -0,0 +1,50 @@
+package com.umaplay.folio;
+
+import android.os.Bundle;
+
+import java.util.Collection;
+
+/**
+ * Holds the saved state of the Pages in a PageManager stack while they are not mounted and across
+ * instance state saves. Implementations decide how much of it ends up in the host's Bundle.
+ */
+public interface PageStateStore {
+    void putState(String pageId, Bundle state);
+
+    /**
+     * @return the state saved for the Page or null if there is none
+     */
+    Bundle getState(String pageId);
+
+    void removeState(String pageId);
+
+    /**
+     * Called when the PageManager saves its state
+     *
+     * @param outState the Bundle the PageManager is saving to
+     */
+    void onSaveInstanceState(Bundle outState);
+
+    /**
+     * Called when the PageManager restores its state
+     *
+     * @param savedState the Bundle previously passed to onSaveInstanceState
+     */
+    void onRestoreInstanceState(Bundle savedState);
+
+    /**
+     * Discards the states of all Pages except the ones provided
+     *
+     * @param pageIds the ids of the Pages that are still on the stack
+     */
+    void retainStates(Collection<String> pageIds);
+
+    /**
+     * Called when the PageManager trims its memory. Releases the states which can be got back
+     * later, e.g. by writing them to disk.
+     *
+     * @param level the trim memory level, see ComponentCallbacks2
+     * @return the number of bytes released
+     */
+    long onTrimMemory(int level);
+}
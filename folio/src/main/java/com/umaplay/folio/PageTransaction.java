@@ -0,0 +1,133 @@
+package com.umaplay.folio;
+
+import com.umaplay.folio.animator.NoAnimationFactory;
+import com.umaplay.folio.animator.PageAnimatorFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.umaplay.folio.Preconditions.checkNotNull;
+import static com.umaplay.folio.Preconditions.checkTrue;
+
+/**
+ * Collects stack operations which are applied together when committed. Only the resulting top
+ * Page is created and mounted, StackChangedListeners are notified once and a single transition
+ * runs between the current top Page and the resulting one.
+ *
+ * <pre>
+ *     pageManager.beginTransaction().pop(2).push(a).push(b).commit(animatorFactory);
+ * </pre>
+ */
+public class PageTransaction {
+
+    private final PageManager mPageManager;
+    private final List<PageFactory> mFactories = new ArrayList<>();
+    private final List<PageAnimatorFactory> mAnimatorFactories = new ArrayList<>();
+    private int mPops;
+    private boolean mPopAll;
+    private boolean mCommitted;
+
+    PageTransaction(PageManager pageManager) {
+        mPageManager = pageManager;
+    }
+
+    /**
+     * Pops the top Page
+     */
+    public PageTransaction pop() {
+        return pop(1);
+    }
+
+    /**
+     * Pops the given number of Pages. Pages pushed in this transaction are popped first, after
+     * popAll there is nothing left in the stack to pop.
+     *
+     * @param count the number of Pages to pop
+     */
+    public PageTransaction pop(int count) {
+        checkTrue(count >= 0, "count < 0");
+
+        while (count > 0 && !mFactories.isEmpty()) {
+            mFactories.remove(mFactories.size() - 1);
+            mAnimatorFactories.remove(mAnimatorFactories.size() - 1);
+            count--;
+        }
+        if (!mPopAll) mPops += count;
+
+        return this;
+    }
+
+    /**
+     * Pops every Page in the stack
+     */
+    public PageTransaction popAll() {
+        mFactories.clear();
+        mAnimatorFactories.clear();
+        mPops = 0;
+        mPopAll = true;
+
+        return this;
+    }
+
+    /**
+     * Pushes a Page which is animated using the PageAnimatorFactory passed to commit
+     *
+     * @param factory responsible for the creation of the Page
+     */
+    public PageTransaction push(PageFactory factory) {
+        checkNotNull(factory, "factory == null");
+
+        mFactories.add(factory);
+        mAnimatorFactories.add(null);
+
+        return this;
+    }
+
+    /**
+     * Pushes a Page
+     *
+     * @param factory responsible for the creation of the Page
+     * @param pageAnimatorFactory responsible for the creation of the Animators of the Page
+     */
+    public PageTransaction push(PageFactory factory, PageAnimatorFactory pageAnimatorFactory) {
+        checkNotNull(factory, "factory == null");
+        checkNotNull(pageAnimatorFactory, "pageAnimatorFactory == null");
+
+        mFactories.add(factory);
+        mAnimatorFactories.add(pageAnimatorFactory);
+
+        return this;
+    }
+
+    /**
+     * Applies the transaction without animating a transition back to a Page already in the stack
+     *
+     * @return the resulting top Page
+     */
+    public Page commit() {
+        return commit(new NoAnimationFactory());
+    }
+
+    /**
+     * Applies the transaction.
+     * The pushed Pages without a PageAnimatorFactory of their own use the provided one. If only
+     * Pages are popped, the transition is animated unless a NoAnimationFactory is provided.
+     *
+     * @param pageAnimatorFactory the PageAnimatorFactory of the transition
+     * @return the resulting top Page
+     */
+    public Page commit(PageAnimatorFactory pageAnimatorFactory) {
+        checkNotNull(pageAnimatorFactory, "pageAnimatorFactory == null");
+        checkTrue(!mCommitted, "Transaction has already been committed");
+        mCommitted = true;
+
+        List<PageAnimatorFactory> animatorFactories = new ArrayList<>(mAnimatorFactories.size());
+        for (PageAnimatorFactory animatorFactory : mAnimatorFactories) {
+            animatorFactories.add(animatorFactory != null ? animatorFactory : pageAnimatorFactory);
+        }
+
+        int pops = mPopAll ? mPageManager.size() : mPops;
+        return mPageManager.commitTransaction(pops, mFactories, animatorFactories,
+                !PageManager.isInstant(pageAnimatorFactory));
+    }
+}
@@ -0,0 +1,157 @@
+package com.umaplay.folio;
+
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+
+import com.umaplay.folio.PageManager.NestedPageManager;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Dispatches visibility and focus changes to a Page and the top Pages of its nested
+ * PageManagers, level by level instead of recursing through the Page callbacks.
+ *
+ * A nested PageManager whose container is GONE or no longer inside the View of its Page is
+ * skipped, it is started once {@link Page#refreshNestedPageManagers()} finds it shown again.
+ * Losing visibility or focus reaches every nested PageManager which has it, deepest first.
+ */
+final class PageTree {
+
+    private PageTree() {
+    }
+
+    static void dispatchVisible(Page root) {
+        if(root.nestedPageManagerCount() == 0) {
+            root.onPageIsVisible();
+            return;
+        }
+
+        ArrayDeque<Page> pending = new ArrayDeque<>();
+        pending.add(root);
+        while (!pending.isEmpty()) {
+            Page page = pending.poll();
+            page.onPageIsVisible();
+
+            for (int i = 0; i < page.nestedPageManagerCount(); i++) {
+                NestedPageManager manager = page.nestedPageManagerAt(i);
+                if(!isShown(page, manager)) continue;
+
+                manager.setStarted(true);
+                if(manager.size() > 0 && !manager.peek().isVisible()) pending.add(manager.peek());
+            }
+        }
+    }
+
+    static void dispatchFocus(Page root) {
+        if(root.nestedPageManagerCount() == 0) {
+            root.onPageHasFocus();
+            return;
+        }
+
+        ArrayDeque<Page> pending = new ArrayDeque<>();
+        pending.add(root);
+        while (!pending.isEmpty()) {
+            Page page = pending.poll();
+            page.onPageHasFocus();
+
+            for (int i = 0; i < page.nestedPageManagerCount(); i++) {
+                NestedPageManager manager = page.nestedPageManagerAt(i);
+                if(!manager.mHasStarted || !isShown(page, manager)) continue;
+
+                manager.setResumed(true);
+                if(manager.size() > 0 && !manager.peek().hasFocus()) pending.add(manager.peek());
+            }
+        }
+    }
+
+    static void dispatchLostFocus(Page root) {
+        if(root.nestedPageManagerCount() == 0) {
+            root.onPageLostFocus();
+            return;
+        }
+
+        List<Page> pages = collect(root, true);
+        for (int i = pages.size() - 1; i >= 0; i--) {
+            Page page = pages.get(i);
+            for (int j = 0; j < page.nestedPageManagerCount(); j++) {
+                NestedPageManager manager = page.nestedPageManagerAt(j);
+                if(manager.mHasResumed) manager.setResumed(false);
+            }
+            if(page.hasFocus()) page.onPageLostFocus();
+        }
+    }
+
+    static void dispatchInvisible(Page root) {
+        if(root.nestedPageManagerCount() == 0) {
+            root.onPageIsInvisible();
+            return;
+        }
+
+        List<Page> pages = collect(root, false);
+        for (int i = pages.size() - 1; i >= 0; i--) {
+            Page page = pages.get(i);
+            for (int j = 0; j < page.nestedPageManagerCount(); j++) {
+                NestedPageManager manager = page.nestedPageManagerAt(j);
+                if(manager.mHasResumed) manager.setResumed(false);
+                if(manager.mHasStarted) manager.setStarted(false);
+            }
+            if(page.isVisible()) page.onPageIsInvisible();
+        }
+    }
+
+    /**
+     * Starts or stops a nested PageManager to match its Page and whether its container is shown
+     */
+    static void sync(Page page, NestedPageManager manager) {
+        boolean shown = isShown(page, manager);
+
+        if(shown && page.isVisible() && !manager.mHasStarted) manager.onStart();
+        if(shown && page.hasFocus() && !manager.mHasResumed) manager.onResume();
+        if((!shown || !page.hasFocus()) && manager.mHasResumed) manager.onPause();
+        if((!shown || !page.isVisible()) && manager.mHasStarted) manager.onStop();
+    }
+
+    /**
+     * @return the root followed by the top Pages of its nested PageManagers which are focused or
+     * visible, parents before their children
+     */
+    private static List<Page> collect(Page root, boolean focused) {
+        List<Page> pages = new ArrayList<>();
+        pages.add(root);
+        for (int index = 0; index < pages.size(); index++) {
+            Page page = pages.get(index);
+            for (int i = 0; i < page.nestedPageManagerCount(); i++) {
+                NestedPageManager manager = page.nestedPageManagerAt(i);
+                if(manager.size() == 0) continue;
+
+                Page top = manager.peek();
+                if(focused ? top.hasFocus() : top.isVisible()) pages.add(top);
+            }
+        }
+
+        return pages;
+    }
+
+    /**
+     * @return true if the container of the PageManager is inside the View of the Page and neither
+     * it nor any parent up to that View is GONE
+     */
+    static boolean isShown(Page page, NestedPageManager manager) {
+        View pageView = page.getView();
+        if(pageView == null) return false;
+
+        View view = manager.getPageContainer();
+        while (view != pageView) {
+            if(view.getVisibility() == View.GONE) return false;
+
+            ViewParent parent = view.getParent();
+            if(!(parent instanceof ViewGroup)) return false;//detached
+            view = (View) parent;
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,34 @@
+package com.umaplay.folio;
+
+import android.content.Context;
+
+/**
+ * Passed to {@link Preloadable#onPreload}. Long running preloads should check isCancelled.
+ */
+public final class PreloadContext {
+
+    private final Context mContext;
+    private volatile boolean mCancelled;
+
+    PreloadContext(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * @return the application Context
+     */
+    public Context getApplicationContext() {
+        return mContext;
+    }
+
+    /**
+     * @return true once the Page has been destroyed and the result will not be delivered
+     */
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    void cancel() {
+        mCancelled = true;
+    }
+}
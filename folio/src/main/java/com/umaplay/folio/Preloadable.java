@@ -0,0 +1,33 @@
+package com.umaplay.folio;
+
+/**
+ * Implemented by Pages which load their data before they are shown. onPreload runs on a
+ * background thread as soon as the Page is created, in parallel with the creation of its View and
+ * the transition. The result is delivered on the main thread once the Page is mounted, or right
+ * away if it already is. A preload is cancelled when the Page is destroyed first.
+ *
+ * @param <T> the type of the preloaded data
+ */
+public interface Preloadable<T> {
+    /**
+     * Called on a background thread after onCreate. Must not touch the Page's Views.
+     *
+     * @param context gives access to the application Context and the cancellation of the preload
+     * @return the data to deliver to onPreloaded
+     */
+    T onPreload(PreloadContext context) throws Exception;
+
+    /**
+     * Called on the main thread while the Page is mounted
+     *
+     * @param result the value returned by onPreload
+     */
+    void onPreloaded(T result);
+
+    /**
+     * Called on the main thread while the Page is mounted if onPreload threw
+     *
+     * @param error the exception thrown by onPreload
+     */
+    void onPreloadFailed(Exception error);
+}
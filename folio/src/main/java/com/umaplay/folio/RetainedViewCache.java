@@ -0,0 +1,87 @@
+package com.umaplay.folio;
+
+import android.view.View;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the detached Views of recently unmounted Pages alive so they can be re-attached instead of
+ * being inflated again. Entries are keyed by Page id and evicted in least recently used order once
+ * the limit is exceeded.
+ */
+abstract class RetainedViewCache {
+
+    private final LinkedHashMap<String, View> mViews = new LinkedHashMap<>(8, 0.75f, true);
+    private int mLimit;
+
+    RetainedViewCache(int limit) {
+        mLimit = limit;
+    }
+
+    /**
+     * Called when a retained View is dropped, either by eviction or explicit removal
+     *
+     * @param view the View which is no longer retained
+     */
+    abstract void onViewDropped(View view);
+
+    int getLimit() {
+        return mLimit;
+    }
+
+    void setLimit(int limit) {
+        mLimit = limit;
+        trimToLimit();
+    }
+
+    int size() {
+        return mViews.size();
+    }
+
+    boolean contains(String pageId) {
+        return mViews.containsKey(pageId);
+    }
+
+    boolean put(String pageId, View view) {
+        if (mLimit <= 0) return false;
+
+        View previous = mViews.put(pageId, view);
+        if (previous != null && previous != view) onViewDropped(previous);
+
+        trimToLimit();
+        return mViews.containsKey(pageId);
+    }
+
+    /**
+     * Removes the retained View for the Page so it can be attached again
+     *
+     * @return the retained View or null if there is none
+     */
+    View take(String pageId) {
+        return mViews.remove(pageId);
+    }
+
+    void remove(String pageId) {
+        View view = mViews.remove(pageId);
+        if (view != null) onViewDropped(view);
+    }
+
+    void evictAll() {
+        trimToSize(0);
+    }
+
+    void trimToSize(int size) {
+        Iterator<Map.Entry<String, View>> iterator = mViews.entrySet().iterator();
+        while (mViews.size() > size && iterator.hasNext()) {
+            View view = iterator.next().getValue();
+            iterator.remove();
+            onViewDropped(view);
+        }
+    }
+
+    private void trimToLimit() {
+        trimToSize(Math.max(mLimit, 0));
+    }
+}
@@ -0,0 +1,153 @@
+package com.umaplay.folio;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.view.View;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps downscaled Bitmaps of the Views of unmounted Pages so that a goBack can animate the
+ * snapshot while the real View is created. Entries are keyed by Page id and evicted in least
+ * recently used order once their total size exceeds the limit.
+ *
+ * A snapshot which is no longer needed is kept as a spare and drawn over by the next capture of
+ * the same size, so covering and uncovering Pages does not allocate a Bitmap every time. The
+ * spare counts towards the limit.
+ */
+class SnapshotCache {
+
+    /**
+     * Snapshots are drawn at this fraction of the View's size, which takes a quarter of the memory
+     */
+    static final float SCALE = 0.5f;
+
+    private final LinkedHashMap<String, Bitmap> mSnapshots = new LinkedHashMap<>(8, 0.75f, true);
+    private long mLimit;
+    private long mSize;
+    private Bitmap mSpare;
+
+    long getLimit() {
+        return mLimit;
+    }
+
+    void setLimit(long limit) {
+        mLimit = limit;
+        trimToSize(Math.max(limit, 0));
+    }
+
+    /**
+     * @return the number of bytes taken by the snapshots and the spare
+     */
+    long size() {
+        return mSize;
+    }
+
+    /**
+     * Draws the View into a downscaled Bitmap and keeps it for the Page
+     */
+    void capture(String pageId, View view) {
+        remove(pageId);
+        if (mLimit <= 0) return;
+
+        int width = (int) (view.getWidth() * SCALE);
+        int height = (int) (view.getHeight() * SCALE);
+        long bytes = (long) width * height * 4;
+        if (width <= 0 || height <= 0 || bytes > mLimit) return;
+
+        Bitmap snapshot = takeSpare(width, height);
+        trimToSize(mLimit - bytes);//make room before allocating
+        if (snapshot != null) {
+            snapshot.eraseColor(Color.TRANSPARENT);
+        }
+        else {
+            try {
+                snapshot = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            }
+            catch (OutOfMemoryError e) {
+                return;//a snapshot is not worth it
+            }
+        }
+
+        Canvas canvas = new Canvas(snapshot);
+        canvas.scale(SCALE, SCALE);
+        view.draw(canvas);
+
+        mSnapshots.put(pageId, snapshot);
+        mSize += sizeOf(snapshot);
+    }
+
+    /**
+     * Removes the snapshot of the Page so it can be shown
+     *
+     * @return the snapshot or null if there is none
+     */
+    Bitmap take(String pageId) {
+        Bitmap snapshot = mSnapshots.remove(pageId);
+        if (snapshot != null) mSize -= sizeOf(snapshot);
+
+        return snapshot;
+    }
+
+    void remove(String pageId) {
+        Bitmap snapshot = take(pageId);
+        if (snapshot != null) offer(snapshot);
+    }
+
+    /**
+     * Offers a snapshot which is no longer shown for reuse. It is kept as the spare if there is
+     * none yet and it fits within the limit.
+     */
+    void offer(Bitmap snapshot) {
+        if (mSpare != null || snapshot.isRecycled() || mSize + sizeOf(snapshot) > mLimit) return;
+
+        mSpare = snapshot;
+        mSize += sizeOf(snapshot);
+    }
+
+    /**
+     * @return the number of bytes released
+     */
+    long evictAll() {
+        long size = mSize;
+        trimToSize(0);
+
+        return size;
+    }
+
+    /**
+     * Takes the spare, a spare of another size is dropped
+     *
+     * @return the spare or null if there is none of this size
+     */
+    private Bitmap takeSpare(int width, int height) {
+        Bitmap spare = mSpare;
+        if (spare == null) return null;
+
+        mSpare = null;
+        mSize -= sizeOf(spare);
+
+        return spare.getWidth() == width && spare.getHeight() == height ? spare : null;
+    }
+
+    private void trimToSize(long size) {
+        if (mSize > size && mSpare != null) {
+            mSize -= sizeOf(mSpare);
+            mSpare = null;
+        }
+
+        Iterator<Map.Entry<String, Bitmap>> iterator = mSnapshots.entrySet().iterator();
+        while (mSize > size && iterator.hasNext()) {
+            Bitmap snapshot = iterator.next().getValue();
+            iterator.remove();
+            mSize -= sizeOf(snapshot);
+        }
+    }
+
+    private static long sizeOf(Bitmap bitmap) {
+        return (long) bitmap.getRowBytes() * bitmap.getHeight();
+    }
+}
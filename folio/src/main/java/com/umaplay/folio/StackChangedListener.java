@@ -9,8 +9,9 @@ public interface StackChangedListener {
      * Depending on the action, the top View in the container might not have changed yet.
      * This is called before the animation starts.
      * For a goTo/replaceAll, the Page has pushed onto the stack and it's view is at the top of the container.
-     * For a goBack/replaceExceptFirst/gotoFirst, the Page has been popped from the stack so we have the previous Page on top but
+     * For a goBack/goBackTo/replaceExceptFirst/gotoFirst, the Page has been popped from the stack so we have the previous Page on top but
      *  the old view still remains and will be removed after the animation completes.
+     * A committed PageTransaction notifies once, no matter how many operations it contains.
      */
     void onStackChanged();
 }
@@ -0,0 +1,186 @@
+package com.umaplay.folio;
+
+import android.content.Context;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.VelocityTracker;
+import android.view.ViewConfiguration;
+import android.widget.FrameLayout;
+
+/**
+ * A container for a PageManager which goes back when the user swipes from the left edge. The
+ * transition follows the finger and settles on release depending on the distance and velocity.
+ * The Page below is mounted once the finger has moved past the touch slop rather than on touch
+ * down, so a tap near the edge does not create and discard its View.
+ *
+ * <pre>
+ *     SwipeBackFrameLayout container = (SwipeBackFrameLayout) findViewById(R.id.container);
+ *     PageManager pageManager = new PageManager(container, this, refWatcher, savedInstanceState);
+ *     container.setPageManager(pageManager);
+ * </pre>
+ */
+public class SwipeBackFrameLayout extends FrameLayout {
+
+    private static final int EDGE_SIZE_DP = 24;
+
+    private final int mEdgeSize;
+    private final int mTouchSlop;
+    private final int mMinFlingVelocity;
+    private PageManager mPageManager;
+    private boolean mSwipeEnabled = true;
+    private VelocityTracker mVelocityTracker;
+    private float mDownX;
+    private boolean mTracking;
+    private boolean mSwiping;
+
+    public SwipeBackFrameLayout(Context context) {
+        this(context, null);
+    }
+
+    public SwipeBackFrameLayout(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public SwipeBackFrameLayout(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+
+        ViewConfiguration configuration = ViewConfiguration.get(context);
+        mTouchSlop = configuration.getScaledTouchSlop();
+        mMinFlingVelocity = configuration.getScaledMinimumFlingVelocity();
+        mEdgeSize = (int) (EDGE_SIZE_DP * getResources().getDisplayMetrics().density + 0.5f);
+    }
+
+    /**
+     * @param pageManager the PageManager using this layout as its container
+     */
+    public void setPageManager(PageManager pageManager) {
+        mPageManager = pageManager;
+    }
+
+    public void setSwipeEnabled(boolean enabled) {
+        mSwipeEnabled = enabled;
+    }
+
+    public boolean isSwipeEnabled() {
+        return mSwipeEnabled;
+    }
+
+    @Override
+    public boolean onInterceptTouchEvent(MotionEvent event) {
+        if(!mSwipeEnabled || mPageManager == null) return false;
+
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                startTracking(event);
+                return false;
+
+            case MotionEvent.ACTION_MOVE:
+                if(!mTracking) return false;
+                track(event);
+
+                return startSwipingPastSlop(event);
+
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                reset();
+                return false;
+        }
+
+        return false;
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if(!mSwiping) {
+            //no child took the down, we keep the gesture to see if it becomes a swipe
+            if(mTracking || (event.getActionMasked() == MotionEvent.ACTION_DOWN
+                    && mSwipeEnabled && mPageManager != null && startTracking(event))) {
+                return onTrackedTouchEvent(event);
+            }
+            return super.onTouchEvent(event);
+        }
+
+        track(event);
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_MOVE:
+                mPageManager.updateInteractiveBack(fractionOf(event));
+                break;
+
+            case MotionEvent.ACTION_UP:
+                mVelocityTracker.computeCurrentVelocity(1000);
+                float velocity = mVelocityTracker.getXVelocity();
+                boolean commit = velocity > mMinFlingVelocity
+                        || (velocity > -mMinFlingVelocity && fractionOf(event) > 0.5f);
+
+                mPageManager.finishInteractiveBack(commit);
+                reset();
+                break;
+
+            case MotionEvent.ACTION_CANCEL:
+                mPageManager.finishInteractiveBack(false);
+                reset();
+                break;
+        }
+
+        return true;
+    }
+
+    /**
+     * @return true if the down is inside the edge zone and there is a Page to go back to
+     */
+    private boolean startTracking(MotionEvent event) {
+        mDownX = event.getX();
+        mTracking = mDownX <= mEdgeSize && mPageManager.size() > 1;
+        if(mTracking) track(event);
+
+        return mTracking;
+    }
+
+    private boolean startSwipingPastSlop(MotionEvent event) {
+        if(event.getX() - mDownX > mTouchSlop && mPageManager.beginInteractiveBack()) {
+            mSwiping = true;
+            getParent().requestDisallowInterceptTouchEvent(true);
+        }
+
+        return mSwiping;
+    }
+
+    /**
+     * Handles the events of an edge gesture which no child consumed until it becomes a swipe
+     */
+    private boolean onTrackedTouchEvent(MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_MOVE:
+                track(event);
+                if(startSwipingPastSlop(event))
+                    mPageManager.updateInteractiveBack(fractionOf(event));
+                break;
+
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                reset();
+                break;
+        }
+
+        return true;
+    }
+
+    private float fractionOf(MotionEvent event) {
+        return getWidth() > 0 ? (event.getX() - mDownX) / getWidth() : 0f;
+    }
+
+    private void track(MotionEvent event) {
+        if(mVelocityTracker == null) mVelocityTracker = VelocityTracker.obtain();
+        mVelocityTracker.addMovement(event);
+    }
+
+    private void reset() {
+        mTracking = false;
+        mSwiping = false;
+
+        if(mVelocityTracker != null) {
+            mVelocityTracker.recycle();
+            mVelocityTracker = null;
+        }
+    }
+}
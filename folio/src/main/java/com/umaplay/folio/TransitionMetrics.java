@@ -0,0 +1,166 @@
+package com.umaplay.folio;
+
+import android.content.Context;
+import android.os.Build;
+import android.view.WindowManager;
+
+/**
+ * Timings of a single transition between two Pages, reported to a TransitionMetricsListener.
+ * All durations are in nanoseconds.
+ */
+public class TransitionMetrics {
+
+    private static long sFrameIntervalNanos;
+
+    private final boolean mGoBack;
+    private final long mStartNanos;
+    private Class<? extends Page> mPageClass;
+    private int mStackDepth;
+    private long mInflateNanos;
+    private long mTimeToFirstLayoutNanos;
+    private long mAnimationStartNanos;
+    private long mAnimationNanos;
+    private long mTotalNanos;
+    private FrameMonitor mFrameMonitor;
+    private int mFrames;
+    private int mSlowFrames;
+    private int mDroppedFrames;
+
+    TransitionMetrics(boolean goBack) {
+        mGoBack = goBack;
+        mStartNanos = System.nanoTime();
+    }
+
+    void onMounted(Page page, int stackDepth, long inflateNanos) {
+        mPageClass = page.getClass();
+        mStackDepth = stackDepth;
+        mInflateNanos = inflateNanos;
+    }
+
+    void onFirstLayout() {
+        mTimeToFirstLayoutNanos = System.nanoTime() - mStartNanos;
+    }
+
+    void onAnimationStart(Context context) {
+        mAnimationStartNanos = System.nanoTime();
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            mFrameMonitor = new FrameMonitor(getFrameIntervalNanos(context));
+            mFrameMonitor.start();
+        }
+    }
+
+    void onFinished() {
+        long now = System.nanoTime();
+        if (mAnimationStartNanos != 0) mAnimationNanos = now - mAnimationStartNanos;
+        mTotalNanos = now - mStartNanos;
+
+        if (mFrameMonitor != null) {
+            mFrameMonitor.stop();
+            mFrames = mFrameMonitor.getFrames();
+            mSlowFrames = mFrameMonitor.getSlowFrames();
+            mDroppedFrames = mFrameMonitor.getDroppedFrames();
+            mFrameMonitor = null;
+        }
+    }
+
+    /**
+     * @return true for a transition back to a Page that was already in the stack, false when a new
+     * Page was pushed
+     */
+    public boolean isGoBack() {
+        return mGoBack;
+    }
+
+    /**
+     * @return the class of the Page that became the top of the stack
+     */
+    public Class<? extends Page> getPageClass() {
+        return mPageClass;
+    }
+
+    /**
+     * @return the size of the stack after the transition
+     */
+    public int getStackDepth() {
+        return mStackDepth;
+    }
+
+    /**
+     * @return the time spent creating, or re-attaching, and mounting the View of the new top Page
+     */
+    public long getInflateNanos() {
+        return mInflateNanos;
+    }
+
+    /**
+     * @return the time until the first layout of the new top View or 0 when the transition did not
+     * wait for it
+     */
+    public long getTimeToFirstLayoutNanos() {
+        return mTimeToFirstLayoutNanos;
+    }
+
+    /**
+     * @return how long the animation ran or 0 if nothing was animated
+     */
+    public long getAnimationNanos() {
+        return mAnimationNanos;
+    }
+
+    /**
+     * @return the time from the start of the navigation until the new top Page had focus
+     */
+    public long getTotalNanos() {
+        return mTotalNanos;
+    }
+
+    /**
+     * @return the number of frames drawn during the animation
+     */
+    public int getFrames() {
+        return mFrames;
+    }
+
+    /**
+     * @return the number of frames during the animation which took longer than one refresh interval
+     */
+    public int getSlowFrames() {
+        return mSlowFrames;
+    }
+
+    /**
+     * @return the number of refresh intervals during the animation in which no frame was drawn
+     */
+    public int getDroppedFrames() {
+        return mDroppedFrames;
+    }
+
+    @Override
+    public String toString() {
+        return "TransitionMetrics{" +
+                "goBack=" + mGoBack +
+                ", page=" + (mPageClass != null ? mPageClass.getName() : null) +
+                ", stackDepth=" + mStackDepth +
+                ", inflateNanos=" + mInflateNanos +
+                ", timeToFirstLayoutNanos=" + mTimeToFirstLayoutNanos +
+                ", animationNanos=" + mAnimationNanos +
+                ", totalNanos=" + mTotalNanos +
+                ", frames=" + mFrames +
+                ", slowFrames=" + mSlowFrames +
+                ", droppedFrames=" + mDroppedFrames +
+                '}';
+    }
+
+    private static long getFrameIntervalNanos(Context context) {
+        if (sFrameIntervalNanos == 0) {
+            WindowManager wm = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+            float refreshRate = wm.getDefaultDisplay().getRefreshRate();
+            if (refreshRate < 1f) refreshRate = 60f;
+
+            sFrameIntervalNanos = (long) (1000000000L / refreshRate);
+        }
+
+        return sFrameIntervalNanos;
+    }
+}
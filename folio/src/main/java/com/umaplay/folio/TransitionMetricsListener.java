@@ -0,0 +1,13 @@
+package com.umaplay.folio;
+
+/**
+ * Listener interface for the timings of PageManager transitions
+ */
+public interface TransitionMetricsListener {
+    /**
+     * Called on the main thread once a transition has finished and the new top Page has focus
+     *
+     * @param metrics the timings of the transition
+     */
+    void onTransitionMeasured(TransitionMetrics metrics);
+}
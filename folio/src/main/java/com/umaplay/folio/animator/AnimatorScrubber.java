@@ -0,0 +1,80 @@
+package com.umaplay.folio.animator;
+
+import android.animation.Animator;
+import android.animation.AnimatorSet;
+import android.animation.ValueAnimator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Seeks an Animator which has not been started to a fraction of its total duration. The Animator
+ * tree is flattened once so seeking does not allocate.
+ *
+ * Only ValueAnimators (which includes ObjectAnimators) can be seeked. The children of an
+ * AnimatorSet are treated as if they were played together, offset by their start delays. A
+ * PageAnimatorFactory creating anything else should implement {@link SeekablePageAnimatorFactory}.
+ */
+public final class AnimatorScrubber {
+
+    private final ValueAnimator[] mAnimators;
+    private final long[] mOffsets;
+    private final long[] mDurations;
+    private final long mTotalDuration;
+
+    public AnimatorScrubber(Animator animator) {
+        List<ValueAnimator> animators = new ArrayList<>();
+        List<long[]> timings = new ArrayList<>();
+        flatten(animator, 0, -1, animators, timings);
+
+        mAnimators = animators.toArray(new ValueAnimator[animators.size()]);
+        mOffsets = new long[mAnimators.length];
+        mDurations = new long[mAnimators.length];
+
+        long total = 0;
+        for (int i = 0; i < mAnimators.length; i++) {
+            mOffsets[i] = timings.get(i)[0];
+            mDurations[i] = timings.get(i)[1];
+            total = Math.max(total, mOffsets[i] + mDurations[i]);
+        }
+        mTotalDuration = total;
+    }
+
+    /**
+     * @return the time from the start of the first to the end of the last child Animator
+     */
+    public long getTotalDuration() {
+        return mTotalDuration;
+    }
+
+    /**
+     * @param fraction 0 for the start and 1 for the end of the Animator
+     */
+    public void seek(float fraction) {
+        long playTime = (long) (mTotalDuration * Math.max(0f, Math.min(1f, fraction)));
+
+        for (int i = 0; i < mAnimators.length; i++) {
+            long time = Math.max(0, Math.min(mDurations[i], playTime - mOffsets[i]));
+            mAnimators[i].setCurrentPlayTime(time);
+        }
+    }
+
+    /**
+     * @param duration the duration an enclosing AnimatorSet imposes on its children or -1
+     */
+    private static void flatten(Animator animator, long offset, long duration,
+                                List<ValueAnimator> animators, List<long[]> timings) {
+        offset += animator.getStartDelay();
+
+        if (animator instanceof AnimatorSet) {
+            long setDuration = animator.getDuration() >= 0 ? animator.getDuration() : duration;
+            for (Animator child : ((AnimatorSet) animator).getChildAnimations()) {
+                flatten(child, offset, setDuration, animators, timings);
+            }
+        }
+        else if (animator instanceof ValueAnimator) {
+            animators.add((ValueAnimator) animator);
+            timings.add(new long[]{offset, duration >= 0 ? duration : animator.getDuration()});
+        }
+    }
+}
@@ -1,20 +1,113 @@
 package com.umaplay.folio.animator;
 
 import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.AnimatorSet;
 import android.animation.ObjectAnimator;
 import android.animation.ValueAnimator;
 import android.content.Context;
+import android.os.Build;
 import android.util.DisplayMetrics;
 import android.view.View;
 import android.view.WindowManager;
 import android.view.animation.AccelerateDecelerateInterpolator;
 import android.view.animation.LinearInterpolator;
 
+import java.util.ArrayList;
+
 /**
  * Created by user on 3/1/2016.
  */
 public class AnimatorUtils {
     private static DisplayMetrics metrics;
+    private static boolean hardwareLayersEnabled = true;
+
+    /**
+     * The built-in animators render their View into a hardware layer while they run, which makes
+     * translation and alpha animations of complex Views much cheaper. Enabled by default.
+     *
+     * @param enabled whether the built-in animators use hardware layers
+     */
+    public static void setHardwareLayersEnabled(boolean enabled) {
+        hardwareLayersEnabled = enabled;
+    }
+
+    public static boolean isHardwareLayersEnabled() {
+        return hardwareLayersEnabled;
+    }
+
+    /**
+     * Renders the View into a hardware layer while the Animator runs. The previous layer type is
+     * restored once it ends.
+     */
+    public static Animator withHardwareLayer(Animator animator, View view) {
+        animator.addListener(new HardwareLayerListener(view));
+
+        return animator;
+    }
+
+    /**
+     * Removes the hardware layer the built-in animators add. Use this in a PageAnimatorFactory
+     * whose Views invalidate constantly, since the layer would be redrawn on every frame anyway.
+     */
+    public static Animator withoutHardwareLayer(Animator animator) {
+        if(animator.getListeners() == null) return animator;
+
+        for (Animator.AnimatorListener listener : new ArrayList<>(animator.getListeners())) {
+            if(listener instanceof HardwareLayerListener) animator.removeListener(listener);
+        }
+
+        return animator;
+    }
+
+    /**
+     * Applies the hardware layers added with {@link #withHardwareLayer} to the Views of an
+     * Animator which is seeked instead of started, see {@link #endHardwareLayers}
+     */
+    public static void beginHardwareLayers(Animator animator) {
+        for (HardwareLayerListener listener : hardwareLayerListeners(animator)) {
+            listener.onAnimationStart(animator);
+        }
+    }
+
+    /**
+     * Restores the layer types changed by {@link #beginHardwareLayers}
+     */
+    public static void endHardwareLayers(Animator animator) {
+        for (HardwareLayerListener listener : hardwareLayerListeners(animator)) {
+            listener.onAnimationEnd(animator);
+        }
+    }
+
+    private static ArrayList<HardwareLayerListener> hardwareLayerListeners(Animator animator) {
+        ArrayList<HardwareLayerListener> found = new ArrayList<>();
+        if(animator.getListeners() != null) {
+            for (Animator.AnimatorListener listener : animator.getListeners()) {
+                if(listener instanceof HardwareLayerListener)
+                    found.add((HardwareLayerListener) listener);
+            }
+        }
+        if(animator instanceof AnimatorSet) {
+            for (Animator child : ((AnimatorSet) animator).getChildAnimations()) {
+                found.addAll(hardwareLayerListeners(child));
+            }
+        }
+
+        return found;
+    }
+
+    private static Animator promote(Animator animator, View view) {
+        return hardwareLayersEnabled ? withHardwareLayer(animator, view) : animator;
+    }
+
+    private static Animator promoteForAlpha(Animator animator, View view) {
+        //without overlapping rendering the alpha is applied while drawing, no layer is needed
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN
+                && !view.hasOverlappingRendering())
+            return animator;
+
+        return promote(animator, view);
+    }
 
     public static DisplayMetrics getDisplayMetrics(Context context) {
         if(metrics == null) {
@@ -39,7 +132,7 @@ public class AnimatorUtils {
         anim.setInterpolator(new LinearInterpolator());
         anim.setDuration(250);
 
-        return anim;
+        return promoteForAlpha(anim, view);
     }
 
     public static Animator createFadeOutAnimator(View view) {
@@ -47,7 +140,7 @@ public class AnimatorUtils {
         anim.setInterpolator(new LinearInterpolator());
         anim.setDuration(250);
 
-        return anim;
+        return promoteForAlpha(anim, view);
     }
 
     public static Animator createSlideInFromBottomAnimator(View view) {
@@ -57,7 +150,7 @@ public class AnimatorUtils {
         anim.setInterpolator(new AccelerateDecelerateInterpolator());
         anim.setDuration(300);
 
-        return anim;
+        return promote(anim, view);
     }
 
     public static Animator createSlideOutToBottomAnimator(View view) {
@@ -67,7 +160,7 @@ public class AnimatorUtils {
         anim.setInterpolator(new AccelerateDecelerateInterpolator());
         anim.setDuration(300);
 
-        return anim;
+        return promote(anim, view);
     }
 
     public static Animator createSlideInFromLeftAnimator(View view) {
@@ -77,7 +170,7 @@ public class AnimatorUtils {
         anim.setInterpolator(new AccelerateDecelerateInterpolator());
         anim.setDuration(300);
 
-        return anim;
+        return promote(anim, view);
     }
 
     public static Animator createSlideOutToLeftAnimator(View view) {
@@ -87,7 +180,7 @@ public class AnimatorUtils {
         anim.setInterpolator(new AccelerateDecelerateInterpolator());
         anim.setDuration(300);
 
-        return anim;
+        return promote(anim, view);
     }
 
     public static Animator createSlideInFromRightAnimator(View view) {
@@ -97,7 +190,7 @@ public class AnimatorUtils {
         anim.setInterpolator(new AccelerateDecelerateInterpolator());
         anim.setDuration(300);
 
-        return anim;
+        return promote(anim, view);
     }
 
     public static Animator createSlideOutToRightAnimator(View view) {
@@ -107,7 +200,7 @@ public class AnimatorUtils {
         anim.setInterpolator(new AccelerateDecelerateInterpolator());
         anim.setDuration(300);
 
-        return anim;
+        return promote(anim, view);
     }
 
     public static Animator createSlideInFromTopAnimator(View view) {
@@ -118,7 +211,7 @@ public class AnimatorUtils {
         anim.setInterpolator(new AccelerateDecelerateInterpolator());
         anim.setDuration(300);
 
-        return anim;
+        return promote(anim, view);
     }
 
     public static Animator createSlideOutToTopAnimator(View view) {
@@ -128,7 +221,7 @@ public class AnimatorUtils {
         anim.setInterpolator(new AccelerateDecelerateInterpolator());
         anim.setDuration(300);
 
-        return anim;
+        return promote(anim, view);
     }
 
 
@@ -143,4 +236,30 @@ public class AnimatorUtils {
     public static void undoSlideLeftRight(View view) {
         view.setTranslationX(0f);
     }
+
+    private static class HardwareLayerListener extends AnimatorListenerAdapter {
+        private final View mView;
+        private int mPreviousLayerType = View.LAYER_TYPE_HARDWARE;
+
+        HardwareLayerListener(View view) {
+            mView = view;
+        }
+
+        @Override
+        public void onAnimationStart(Animator animation) {
+            mPreviousLayerType = mView.getLayerType();
+            if(mPreviousLayerType == View.LAYER_TYPE_HARDWARE) return;
+
+            mView.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+            if(mView.getWindowToken() != null) mView.buildLayer();
+        }
+
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            if(mPreviousLayerType == View.LAYER_TYPE_HARDWARE) return;
+
+            mView.setLayerType(mPreviousLayerType, null);
+            mPreviousLayerType = View.LAYER_TYPE_HARDWARE;
+        }
+    }
 }
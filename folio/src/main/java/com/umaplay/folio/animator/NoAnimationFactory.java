@@ -5,6 +5,8 @@ import android.view.View;
 
 /**
  * Created by user on 2/28/2016.
+ * The PageManager recognizes this factory and completes transitions between Pages using it in the
+ * same frame, without creating any Animators.
  */
 public class NoAnimationFactory implements PageAnimatorFactory {
     @Override
@@ -8,6 +8,8 @@ import java.io.Serializable;
 
 /**
  * Interface for creating Animator instances for goTo() and goBack() transitions.
+ * During an interactive back transition the Animators are not started but seeked by the gesture,
+ * see {@link AnimatorScrubber} and {@link SeekablePageAnimatorFactory}.
  */
 public interface PageAnimatorFactory extends Serializable {
     Animator createInAnimator(View view);
@@ -0,0 +1,19 @@
+package com.umaplay.folio.animator;
+
+import android.animation.Animator;
+
+/**
+ * A PageAnimatorFactory whose Animators are seeked by the factory itself during an interactive
+ * back transition. Factories creating ValueAnimators and AnimatorSets do not need this, they are
+ * seeked by an {@link AnimatorScrubber}.
+ */
+public interface SeekablePageAnimatorFactory extends PageAnimatorFactory {
+    /**
+     * Sets the Animator, which was created by this factory and has not been started, to the
+     * fraction of its progress. Called on every frame so it should not allocate.
+     *
+     * @param animator the Animator created by createInAnimator or createOutAnimator
+     * @param fraction 0 for the start and 1 for the end of the Animator
+     */
+    void seek(Animator animator, float fraction);
+}
@@ -0,0 +1,24 @@
+package com.umaplay.folio.leak;
+
+/**
+ * Decides how PageManagers check that Pages and Views they are done with get garbage collected.
+ * Every destroyed Page and every View which is removed for good is passed to {@link #watch}.
+ * {@link #onNavigation} is called before the references of each navigation.
+ *
+ * Implementations are {@link NoOpLeakWatchPolicy}, {@link RefWatcherPolicy} for LeakCanary,
+ * {@link SampledLeakWatchPolicy} and {@link RetainedReferenceCounter}.
+ */
+public interface LeakWatchPolicy {
+
+    /**
+     * Called on the main thread with an object which is expected to be collected soon
+     */
+    void watch(Object reference);
+
+    /**
+     * Called on the main thread when a navigation starts. The Pages and Views it is done with are
+     * passed to watch after this call and before the next one. References which are released
+     * outside of a navigation, e.g. when memory is trimmed, belong to the last one.
+     */
+    void onNavigation();
+}
@@ -0,0 +1,20 @@
+package com.umaplay.folio.leak;
+
+/**
+ * A LeakWatchPolicy which watches nothing, for release builds and stress runs
+ */
+public final class NoOpLeakWatchPolicy implements LeakWatchPolicy {
+
+    public static final NoOpLeakWatchPolicy INSTANCE = new NoOpLeakWatchPolicy();
+
+    private NoOpLeakWatchPolicy() {
+    }
+
+    @Override
+    public void watch(Object reference) {
+    }
+
+    @Override
+    public void onNavigation() {
+    }
+}
@@ -0,0 +1,25 @@
+package com.umaplay.folio.leak;
+
+import com.squareup.leakcanary.RefWatcher;
+
+/**
+ * Watches every reference with a LeakCanary RefWatcher, which dumps the heap when one is retained
+ */
+public final class RefWatcherPolicy implements LeakWatchPolicy {
+
+    private final RefWatcher mRefWatcher;
+
+    public RefWatcherPolicy(RefWatcher refWatcher) {
+        if (refWatcher == null) throw new NullPointerException("refWatcher == null");
+        mRefWatcher = refWatcher;
+    }
+
+    @Override
+    public void watch(Object reference) {
+        mRefWatcher.watch(reference);
+    }
+
+    @Override
+    public void onNavigation() {
+    }
+}
@@ -0,0 +1,114 @@
+package com.umaplay.folio.leak;
+
+import android.os.SystemClock;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A LeakWatchPolicy cheap enough for production. It keeps a WeakReference to every watched
+ * object and counts those which are still reachable after a delay. It never triggers a garbage
+ * collection or dumps the heap, so an object can be counted as retained just because no
+ * collection has run since. Treat the counts as a trend rather than proof of a leak.
+ *
+ * The counts can be read from any thread.
+ */
+public final class RetainedReferenceCounter implements LeakWatchPolicy {
+
+    private final long mDelayMillis;
+    private final ReferenceQueue<Object> mQueue = new ReferenceQueue<>();
+    private final Set<WatchedReference> mWatched = new HashSet<>();
+    private long mWatchedCount;
+    private long mCollectedCount;
+
+    /**
+     * @param delayMillis how long a watched object may stay reachable before it counts as
+     *                    retained
+     */
+    public RetainedReferenceCounter(long delayMillis) {
+        if (delayMillis < 0) throw new IllegalArgumentException("delayMillis < 0");
+
+        mDelayMillis = delayMillis;
+    }
+
+    @Override
+    public void watch(Object reference) {
+        if (reference == null) throw new NullPointerException("reference == null");
+
+        synchronized (mWatched) {
+            removeCollected();
+            mWatched.add(new WatchedReference(reference, mQueue));
+            mWatchedCount++;
+        }
+    }
+
+    @Override
+    public void onNavigation() {
+    }
+
+    /**
+     * @return the number of watched objects which are still reachable after the delay
+     */
+    public int getRetainedCount() {
+        return getRetainedCount(Object.class);
+    }
+
+    /**
+     * @param type e.g. Page.class or View.class
+     * @return the number of watched objects of the type which are still reachable after the delay
+     */
+    public int getRetainedCount(Class<?> type) {
+        long now = SystemClock.uptimeMillis();
+
+        synchronized (mWatched) {
+            removeCollected();
+
+            int retained = 0;
+            for (WatchedReference reference : mWatched) {
+                if (now - reference.mWatchUptime >= mDelayMillis
+                        && type.isAssignableFrom(reference.mType))
+                    retained++;
+            }
+            return retained;
+        }
+    }
+
+    /**
+     * @return the number of objects watched so far
+     */
+    public long getWatchedCount() {
+        synchronized (mWatched) {
+            return mWatchedCount;
+        }
+    }
+
+    /**
+     * @return the number of watched objects which have been collected so far
+     */
+    public long getCollectedCount() {
+        synchronized (mWatched) {
+            removeCollected();
+            return mCollectedCount;
+        }
+    }
+
+    private void removeCollected() {
+        WatchedReference reference;
+        while ((reference = (WatchedReference) mQueue.poll()) != null) {
+            if (mWatched.remove(reference)) mCollectedCount++;
+        }
+    }
+
+    private static final class WatchedReference extends WeakReference<Object> {
+        final Class<?> mType;
+        final long mWatchUptime;
+
+        WatchedReference(Object referent, ReferenceQueue<Object> queue) {
+            super(referent, queue);
+            mType = referent.getClass();
+            mWatchUptime = SystemClock.uptimeMillis();
+        }
+    }
+}
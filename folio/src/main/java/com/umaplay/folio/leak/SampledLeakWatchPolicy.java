@@ -0,0 +1,42 @@
+package com.umaplay.folio.leak;
+
+/**
+ * Passes the references of one in every N navigations on to another LeakWatchPolicy, so leaks
+ * are still found over many navigations without paying for every one of them. Sampling whole
+ * navigations rather than single references keeps every kind of reference in the sample, a
+ * navigation always releases its Views before its Pages.
+ *
+ * <pre>
+ *     new SampledLeakWatchPolicy(new RefWatcherPolicy(refWatcher), 10);
+ * </pre>
+ */
+public final class SampledLeakWatchPolicy implements LeakWatchPolicy {
+
+    private final LeakWatchPolicy mDelegate;
+    private final int mRate;
+    private int mCount;
+    private boolean mSampled = true;//references before the first navigation are watched
+
+    /**
+     * @param delegate the LeakWatchPolicy watching the sampled references
+     * @param rate     N, 1 watches every navigation
+     */
+    public SampledLeakWatchPolicy(LeakWatchPolicy delegate, int rate) {
+        if (delegate == null) throw new NullPointerException("delegate == null");
+        if (rate < 1) throw new IllegalArgumentException("rate < 1");
+
+        mDelegate = delegate;
+        mRate = rate;
+    }
+
+    @Override
+    public void watch(Object reference) {
+        if (mSampled) mDelegate.watch(reference);
+    }
+
+    @Override
+    public void onNavigation() {
+        mSampled = mCount++ % mRate == 0;
+        if (mSampled) mDelegate.onNavigation();
+    }
+}
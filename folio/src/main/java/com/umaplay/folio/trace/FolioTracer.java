@@ -0,0 +1,37 @@
+package com.umaplay.folio.trace;
+
+/**
+ * Receives the lifecycle events and timed sections of Pages and PageManagers.
+ * Every method is called on the main thread and on every navigation, so implementations must be
+ * cheap. The owner is the Page or PageManager the event belongs to, events and sections are
+ * constant names so nothing is allocated unless the implementation does it.
+ * Install an implementation with {@link FolioTracers#setTracer}.
+ */
+public interface FolioTracer {
+    /**
+     * @param owner the Page or PageManager
+     * @param event the name of the lifecycle method e.g. onCreate
+     */
+    void onLifecycleEvent(Object owner, String event);
+
+    /**
+     * Starts a section which ends on the same thread before the current one ends
+     *
+     * @param owner the Page or PageManager
+     * @param section the name of the section e.g. inflate
+     */
+    void beginSection(Object owner, String section);
+
+    void endSection();
+
+    /**
+     * Starts a section which can span several frames e.g. an animation
+     *
+     * @param owner the Page or PageManager
+     * @param section the name of the section
+     * @param cookie identifies the section when it ends
+     */
+    void beginAsyncSection(Object owner, String section, int cookie);
+
+    void endAsyncSection(Object owner, String section, int cookie);
+}
@@ -0,0 +1,23 @@
+package com.umaplay.folio.trace;
+
+/**
+ * Holds the FolioTracer used by all Pages and PageManagers. Defaults to a tracer which does
+ * nothing.
+ */
+public final class FolioTracers {
+
+    private static volatile FolioTracer sTracer = NoOpTracer.INSTANCE;
+
+    public static void setTracer(FolioTracer tracer) {
+        if (tracer == null) throw new NullPointerException("tracer == null");
+        sTracer = tracer;
+    }
+
+    public static FolioTracer get() {
+        return sTracer;
+    }
+
+    private FolioTracers() {
+        throw new AssertionError("No instances");
+    }
+}
@@ -0,0 +1,56 @@
+package com.umaplay.folio.trace;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.umaplay.folio.PageManager;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A FolioTracer which logs every lifecycle event and the duration of every section to logcat.
+ * Meant for debugging only.
+ */
+public class LogcatTracer implements FolioTracer {
+
+    private static final String TAG = "Folio";
+
+    private final Deque<Long> mSectionStarts = new ArrayDeque<>();
+    private final Deque<String> mSectionNames = new ArrayDeque<>();
+
+    @Override
+    public void onLifecycleEvent(Object owner, String event) {
+        if (owner instanceof PageManager) {
+            Log.d(TAG, owner.getClass().getSimpleName() + "::" + event + ": "
+                    + ((PageManager) owner).getNesting());
+        }
+        else {
+            Log.d(TAG, owner.getClass().getName() + "::" + event);
+        }
+    }
+
+    @Override
+    public void beginSection(Object owner, String section) {
+        mSectionNames.push(owner.getClass().getSimpleName() + "#" + section);
+        mSectionStarts.push(SystemClock.uptimeMillis());
+    }
+
+    @Override
+    public void endSection() {
+        if (mSectionNames.isEmpty()) return;
+
+        long duration = SystemClock.uptimeMillis() - mSectionStarts.pop();
+        Log.d(TAG, mSectionNames.pop() + " took " + duration + "ms");
+    }
+
+    @Override
+    public void beginAsyncSection(Object owner, String section, int cookie) {
+        Log.d(TAG, owner.getClass().getSimpleName() + "#" + section + " started [" + cookie + "]");
+    }
+
+    @Override
+    public void endAsyncSection(Object owner, String section, int cookie) {
+        Log.d(TAG, owner.getClass().getSimpleName() + "#" + section + " ended [" + cookie + "]");
+    }
+}
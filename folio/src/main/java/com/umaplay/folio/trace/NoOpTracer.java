@@ -0,0 +1,32 @@
+package com.umaplay.folio.trace;
+
+/**
+ * The default FolioTracer which does nothing
+ */
+public final class NoOpTracer implements FolioTracer {
+
+    public static final NoOpTracer INSTANCE = new NoOpTracer();
+
+    private NoOpTracer() {
+    }
+
+    @Override
+    public void onLifecycleEvent(Object owner, String event) {
+    }
+
+    @Override
+    public void beginSection(Object owner, String section) {
+    }
+
+    @Override
+    public void endSection() {
+    }
+
+    @Override
+    public void beginAsyncSection(Object owner, String section, int cookie) {
+    }
+
+    @Override
+    public void endAsyncSection(Object owner, String section, int cookie) {
+    }
+}
@@ -0,0 +1,96 @@
+package com.umaplay.folio.trace;
+
+import android.os.Build;
+import android.os.Trace;
+import android.util.Log;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A FolioTracer which emits android.os.Trace sections named after the class of their owner e.g.
+ * "RedPage#inflate", so they show up in systrace and Perfetto.
+ * Requires API 18. Async sections, used for animations, require API 29 and are skipped on older
+ * versions.
+ */
+public class SystraceTracer implements FolioTracer {
+
+    private static final String TAG = "Folio.SystraceTracer";
+    private static final int MAX_SECTION_NAME_LENGTH = 127;
+
+    private final Map<Class<?>, Map<String, String>> mNames = new HashMap<>();
+    private final boolean mEnabled = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+    private Method mBeginAsyncSection;
+    private Method mEndAsyncSection;
+
+    public SystraceTracer() {
+        if (Build.VERSION.SDK_INT >= 29) {
+            try {
+                mBeginAsyncSection = Trace.class.getMethod("beginAsyncSection", String.class, int.class);
+                mEndAsyncSection = Trace.class.getMethod("endAsyncSection", String.class, int.class);
+            }
+            catch (NoSuchMethodException e) {
+                Log.w(TAG, "Async trace sections are not available", e);
+            }
+        }
+    }
+
+    @Override
+    public void onLifecycleEvent(Object owner, String event) {
+        //lifecycle events happen inside the traced sections
+    }
+
+    @Override
+    public void beginSection(Object owner, String section) {
+        if (mEnabled) Trace.beginSection(getName(owner, section));
+    }
+
+    @Override
+    public void endSection() {
+        if (mEnabled) Trace.endSection();
+    }
+
+    @Override
+    public void beginAsyncSection(Object owner, String section, int cookie) {
+        invoke(mBeginAsyncSection, getName(owner, section), cookie);
+    }
+
+    @Override
+    public void endAsyncSection(Object owner, String section, int cookie) {
+        invoke(mEndAsyncSection, getName(owner, section), cookie);
+    }
+
+    private void invoke(Method method, String name, int cookie) {
+        if (method == null) return;
+
+        try {
+            method.invoke(null, name, cookie);
+        }
+        catch (Exception e) {
+            Log.w(TAG, "Cannot trace " + name, e);
+        }
+    }
+
+    /**
+     * Section names are cached so tracing a navigation does not allocate new Strings
+     */
+    private String getName(Object owner, String section) {
+        Map<String, String> names = mNames.get(owner.getClass());
+        if (names == null) {
+            names = new HashMap<>();
+            mNames.put(owner.getClass(), names);
+        }
+
+        String name = names.get(section);
+        if (name == null) {
+            name = owner.getClass().getSimpleName() + "#" + section;
+            if (name.length() > MAX_SECTION_NAME_LENGTH)
+                name = name.substring(name.length() - MAX_SECTION_NAME_LENGTH);
+
+            names.put(section, name);
+        }
+
+        return name;
+    }
+}
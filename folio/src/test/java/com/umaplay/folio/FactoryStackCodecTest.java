@@ -0,0 +1,136 @@
+package com.umaplay.folio;
+
+import android.os.Bundle;
+import android.os.Parcel;
+import android.widget.FrameLayout;
+
+import com.umaplay.folio.animator.NoAnimationFactory;
+import com.umaplay.folio.leak.NoOpLeakWatchPolicy;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class FactoryStackCodecTest {
+
+    @Before
+    public void setUp() {
+        FactoryCodecs.register(CodecFactory.class, new FactoryCodec<CodecFactory>() {
+            @Override
+            public void write(CodecFactory factory, Parcel out) {
+                out.writeString(factory.mName);
+            }
+
+            @Override
+            public CodecFactory read(Parcel in) {
+                return new CodecFactory(in.readString());
+            }
+        });
+    }
+
+    @Test
+    public void roundTripKeepsFieldsIdsAndAnimatorFactories() {
+        CodecFactory first = factory(new CodecFactory("a"), "1");
+        first.setAnimatorFactory(new NoAnimationFactory());
+        CodecFactory second = factory(new CodecFactory("b"), "2");
+
+        List<PageFactory> decoded = FactoryStackCodec.decode(FactoryStackCodec.encode(
+                Arrays.<PageFactory>asList(first, second), new int[2]));
+
+        assertEquals(2, decoded.size());
+        assertEquals("a", ((CodecFactory) decoded.get(0)).mName);
+        assertEquals("1", decoded.get(0).getId());
+        assertTrue(decoded.get(0).getAnimatorFactory() instanceof NoAnimationFactory);
+        assertEquals("b", ((CodecFactory) decoded.get(1)).mName);
+        assertEquals("2", decoded.get(1).getId());
+        assertNull(decoded.get(1).getAnimatorFactory());
+    }
+
+    @Test
+    public void factoriesWithoutCodecFallBackToSerialization() {
+        List<PageFactory> factories = Arrays.<PageFactory>asList(
+                factory(new CodecFactory("a"), "1"), factory(new TestPage.Factory("b"), "2"));
+        assertTrue(FactoryStackCodec.canEncode(factories));
+
+        List<PageFactory> decoded = FactoryStackCodec.decode(
+                FactoryStackCodec.encode(factories, new int[2]));
+
+        assertEquals(TestPage.Factory.class, decoded.get(1).getClass());
+        assertEquals("b", ((TestPage) decoded.get(1).getPage()).getName());
+        assertEquals("2", decoded.get(1).getId());
+    }
+
+    @Test
+    public void stackWithoutAnyCodecIsNotEncoded() {
+        assertFalse(FactoryStackCodec.canEncode(Collections.<PageFactory>singletonList(
+                new TestPage.Factory("a"))));
+    }
+
+    @Test
+    public void classNamesAreOnlyWrittenOnce() {
+        int[] sizes = new int[2];
+        FactoryStackCodec.encode(Arrays.<PageFactory>asList(
+                factory(new CodecFactory("a"), "1"), factory(new CodecFactory("a"), "2")), sizes);
+
+        assertTrue(sizes[1] < sizes[0]);
+    }
+
+    @Test
+    public void sizesAreReportedForEachPageOfTheSameFactory() {
+        PageManager pageManager = new PageManager(
+                new FrameLayout(RuntimeEnvironment.application), new PageStackDelegate() {
+                    @Override
+                    public void onStackEmpty() {
+                    }
+                }, NoOpLeakWatchPolicy.INSTANCE, null);
+        PageFactory factory = new CodecFactory("a");
+        Page first = pageManager.goTo(factory, new NoAnimationFactory());
+        Page second = pageManager.goTo(factory, new NoAnimationFactory());
+
+        pageManager.onSaveInstanceState(new Bundle());
+
+        Map<String, Integer> sizes = pageManager.getLastSavedFactorySizes();
+        assertEquals(Arrays.asList(first.getId(), second.getId()),
+                new ArrayList<>(sizes.keySet()));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void unknownVersionThrows() {
+        Parcel parcel = Parcel.obtain();
+        parcel.writeInt(Integer.MAX_VALUE);
+        byte[] data = parcel.marshall();
+        parcel.recycle();
+
+        FactoryStackCodec.decode(data);
+    }
+
+    private static <T extends PageFactory> T factory(T factory, String id) {
+        factory.setId(id);
+        return factory;
+    }
+
+    public static class CodecFactory extends TestPage.Factory {
+        final String mName;
+
+        public CodecFactory(String name) {
+            super(name);
+            mName = name;
+        }
+    }
+}
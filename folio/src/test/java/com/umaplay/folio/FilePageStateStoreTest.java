@@ -0,0 +1,134 @@
+package com.umaplay.folio;
+
+import android.os.Bundle;
+import android.widget.FrameLayout;
+
+import com.umaplay.folio.animator.NoAnimationFactory;
+import com.umaplay.folio.leak.NoOpLeakWatchPolicy;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class FilePageStateStoreTest {
+
+    private static final PageStackDelegate DELEGATE = new PageStackDelegate() {
+        @Override
+        public void onStackEmpty() {
+        }
+    };
+
+    private File mDirectory;
+
+    @Before
+    public void setUp() {
+        mDirectory = new File(RuntimeEnvironment.application.getCacheDir(), "folio-state-test");
+    }
+
+    @Test
+    public void statesSurviveTheHostBeingRecreated() {
+        PageManager pageManager = newPageManager(null);
+        CounterPage covered = (CounterPage) pageManager.goTo(new CounterPage.Factory(),
+                new NoAnimationFactory());
+        covered.mCount = 42;
+        covered.markStateDirty();
+        pageManager.goTo(new TestPage.Factory("top"), new NoAnimationFactory());
+
+        //a rotation saves the state and destroys the host before the new one restores it
+        Bundle state = new Bundle();
+        pageManager.onSaveInstanceState(state);
+        pageManager.onDestroy();
+        PageManager recreated = newPageManager(state);
+        recreated.goBack(false);
+
+        assertEquals(42, ((CounterPage) recreated.peek()).mCount);
+    }
+
+    @Test
+    public void changesOfACoveredPageSurviveHibernation() {
+        PageManager pageManager = newPageManager(null);
+        pageManager.setMaxLivePages(2);
+        CounterPage covered = (CounterPage) pageManager.goTo(new CounterPage.Factory(),
+                new NoAnimationFactory());
+        pageManager.goTo(new TestPage.Factory("a"), new NoAnimationFactory());
+
+        //e.g. data loaded in the background while the Page is covered
+        covered.mCount = 42;
+        covered.markStateDirty();
+        pageManager.goTo(new TestPage.Factory("b"), new NoAnimationFactory());
+        pageManager.goBack(false);
+        pageManager.goBack(false);
+
+        CounterPage recreated = (CounterPage) pageManager.peek();
+        assertNotSame(covered, recreated);
+        assertEquals(42, recreated.mCount);
+    }
+
+    @Test
+    public void statesAreOnDiskOnceSaved() {
+        FilePageStateStore store = new FilePageStateStore(mDirectory, getClass().getClassLoader());
+        store.putState("a", new Bundle());
+
+        store.onSaveInstanceState(new Bundle());
+
+        assertTrue(new File(mDirectory, "a.state").exists());
+    }
+
+    @Test
+    public void statesAreReadBackAfterTrimMemory() {
+        FilePageStateStore store = new FilePageStateStore(mDirectory, getClass().getClassLoader());
+        Bundle state = new Bundle();
+        state.putInt("count", 7);
+        store.putState("a", state);
+
+        store.onSaveInstanceState(new Bundle());
+        store.onTrimMemory(0);
+
+        assertEquals(7, store.getState("a").getInt("count"));
+    }
+
+    private PageManager newPageManager(Bundle savedInstanceState) {
+        return new PageManager(new FrameLayout(RuntimeEnvironment.application), DELEGATE,
+                NoOpLeakWatchPolicy.INSTANCE,
+                new FilePageStateStore(mDirectory, getClass().getClassLoader()),
+                savedInstanceState);
+    }
+
+    public static class CounterPage extends TestPage {
+        int mCount;
+
+        CounterPage() {
+            super("counter");
+        }
+
+        @Override
+        public void onSaveState(Bundle outBundle) {
+            super.onSaveState(outBundle);
+            outBundle.putInt("count", mCount);
+        }
+
+        @Override
+        public void onRestoreState(Bundle bundle) {
+            super.onRestoreState(bundle);
+            mCount = bundle.getInt("count");
+        }
+
+        public static class Factory extends BasePageFactory {
+            @Override
+            public Page getPage() {
+                return new CounterPage();
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.umaplay.folio;
+
+import android.widget.FrameLayout;
+
+import com.umaplay.folio.animator.NoAnimationFactory;
+import com.umaplay.folio.leak.NoOpLeakWatchPolicy;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class NavigationQueueTest {
+
+    private PageManager mPageManager;
+    private NavigationQueue mQueue;
+
+    @Before
+    public void setUp() {
+        mPageManager = new PageManager(new FrameLayout(RuntimeEnvironment.application),
+                new PageStackDelegate() {
+                    @Override
+                    public void onStackEmpty() {
+                    }
+                }, NoOpLeakWatchPolicy.INSTANCE, null);
+        mPageManager.goTo(new TestPage.Factory("root"), new NoAnimationFactory());
+        mQueue = new NavigationQueue(mPageManager);
+
+        //requests are only applied once the test lets the main looper run
+        ShadowLooper.pauseMainLooper();
+    }
+
+    @After
+    public void tearDown() {
+        ShadowLooper.unPauseMainLooper();
+    }
+
+    @Test
+    public void pendingGoToWithTheSameFactoryIsCoalesced() {
+        PageFactory factory = new TestPage.Factory("a");
+        mQueue.goTo(factory);
+        mQueue.goTo(factory);
+
+        ShadowLooper.idleMainLooper();
+
+        assertEquals(2, mPageManager.size());
+        assertEquals(1, mQueue.getCoalescedCount());
+    }
+
+    @Test
+    public void factoriesWhichAreNotEqualAreNotCoalesced() {
+        mQueue.goTo(new TestPage.Factory("a"));
+        mQueue.goTo(new TestPage.Factory("a"));
+
+        ShadowLooper.idleMainLooper();
+
+        assertEquals(3, mPageManager.size());
+        assertEquals(0, mQueue.getCoalescedCount());
+    }
+
+    @Test
+    public void factoriesWhichAreEqualAreCoalesced() {
+        mQueue.goTo(new EqualFactory("a"));
+        mQueue.goTo(new EqualFactory("a"));
+        mQueue.goTo(new EqualFactory("b"));
+
+        ShadowLooper.idleMainLooper();
+
+        assertEquals(3, mPageManager.size());
+        assertEquals(1, mQueue.getCoalescedCount());
+    }
+
+    @Test
+    public void duplicatesSeparatedByAnotherRequestAreKept() {
+        PageFactory factory = new TestPage.Factory("a");
+        mQueue.goTo(factory);
+        mQueue.goBack(false);
+        mQueue.goTo(factory);
+
+        ShadowLooper.idleMainLooper();
+
+        assertEquals(2, mPageManager.size());
+        assertEquals(0, mQueue.getCoalescedCount());
+    }
+
+    @Test
+    public void goBackIsNeverCoalesced() {
+        mPageManager.goTo(new TestPage.Factory("a"), new NoAnimationFactory());
+        mPageManager.goTo(new TestPage.Factory("b"), new NoAnimationFactory());
+
+        mQueue.goBack(false);
+        mQueue.goBack(false);
+        ShadowLooper.idleMainLooper();
+
+        assertEquals(1, mPageManager.size());
+        assertEquals(0, mQueue.getCoalescedCount());
+    }
+
+    @Test
+    public void cancelAllDropsPendingRequests() {
+        mQueue.goTo(new TestPage.Factory("a"));
+        mQueue.cancelAll();
+
+        ShadowLooper.idleMainLooper();
+
+        assertEquals(1, mPageManager.size());
+    }
+
+    @Test
+    public void requestsAreIgnoredOnceThePageManagerIsDestroyed() {
+        mQueue.goTo(new TestPage.Factory("a"));
+        mQueue.goBack(false);
+        mPageManager.onDestroy();
+
+        ShadowLooper.idleMainLooper();//must not throw EmptyStackException
+        mQueue.goBack(false);
+        ShadowLooper.idleMainLooper();
+
+        assertEquals(0, mPageManager.size());
+    }
+
+    private static class EqualFactory extends TestPage.Factory {
+        private final String mName;
+
+        EqualFactory(String name) {
+            super(name);
+            mName = name;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof EqualFactory && ((EqualFactory) o).mName.equals(mName);
+        }
+
+        @Override
+        public int hashCode() {
+            return mName.hashCode();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.umaplay.folio;
+
+import android.widget.FrameLayout;
+
+import com.umaplay.folio.PageLifecycle.State;
+import com.umaplay.folio.animator.NoAnimationFactory;
+import com.umaplay.folio.leak.NoOpLeakWatchPolicy;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class PageLifecycleTest {
+
+    private PageManager mPageManager;
+    private RecordingObserver mObserver;
+
+    @Before
+    public void setUp() {
+        mPageManager = new PageManager(new FrameLayout(RuntimeEnvironment.application),
+                new PageStackDelegate() {
+                    @Override
+                    public void onStackEmpty() {
+                    }
+                }, NoOpLeakWatchPolicy.INSTANCE, null);
+        mPageManager.goTo(new TestPage.Factory("root"), new NoAnimationFactory());
+        mObserver = new RecordingObserver();
+    }
+
+    @Test
+    public void observerAddedLateIsBroughtUpToTheCurrentState() {
+        Page page = mPageManager.goTo(new TestPage.Factory("a"), new NoAnimationFactory());
+
+        page.getPageLifecycle().addObserver(mObserver);
+
+        assertEquals(Arrays.asList(State.CREATED, State.MOUNTED, State.VISIBLE, State.FOCUSED),
+                mObserver.mStates);
+    }
+
+    @Test
+    public void destroyingAFocusedPageStepsThroughEveryState() {
+        Page page = mPageManager.goTo(new TestPage.Factory("a"), new NoAnimationFactory());
+        page.getPageLifecycle().addObserver(mObserver);
+        mObserver.mStates.clear();
+
+        mPageManager.goBack(false);
+
+        assertEquals(Arrays.asList(State.VISIBLE, State.MOUNTED, State.CREATED, State.DESTROYED),
+                mObserver.mStates);
+        assertEquals(State.DESTROYED, page.getPageLifecycle().getState());
+    }
+
+    @Test
+    public void coveredPageStepsDownToCreatedAndBackUp() {
+        Page page = mPageManager.goTo(new TestPage.Factory("a"), new NoAnimationFactory());
+        page.getPageLifecycle().addObserver(mObserver);
+        mObserver.mStates.clear();
+
+        mPageManager.goTo(new TestPage.Factory("b"), new NoAnimationFactory());
+        mPageManager.goBack(false);
+
+        assertEquals(Arrays.asList(State.VISIBLE, State.MOUNTED, State.CREATED,
+                State.MOUNTED, State.VISIBLE, State.FOCUSED), mObserver.mStates);
+    }
+
+    @Test
+    public void observerAddedAfterDestroyIsIgnored() {
+        Page page = mPageManager.goTo(new TestPage.Factory("a"), new NoAnimationFactory());
+        mPageManager.goBack(false);
+
+        page.getPageLifecycle().addObserver(mObserver);
+
+        assertTrue(mObserver.mStates.isEmpty());
+    }
+
+    private static class RecordingObserver implements PageLifecycle.Observer {
+        final List<State> mStates = new ArrayList<>();
+
+        @Override
+        public void onStateChanged(PageLifecycleOwner owner, State state) {
+            mStates.add(state);
+        }
+    }
+}
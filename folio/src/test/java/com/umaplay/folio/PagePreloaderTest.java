@@ -0,0 +1,125 @@
+package com.umaplay.folio;
+
+import android.widget.FrameLayout;
+
+import com.umaplay.folio.animator.NoAnimationFactory;
+import com.umaplay.folio.leak.NoOpLeakWatchPolicy;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class PagePreloaderTest {
+
+    private PageManager mPageManager;
+
+    @Before
+    public void setUp() {
+        mPageManager = new PageManager(new FrameLayout(RuntimeEnvironment.application),
+                new PageStackDelegate() {
+                    @Override
+                    public void onStackEmpty() {
+                    }
+                }, NoOpLeakWatchPolicy.INSTANCE, null);
+        mPageManager.goTo(new TestPage.Factory("root"), new NoAnimationFactory());
+
+        //results are only delivered once the test lets the main looper run
+        ShadowLooper.pauseMainLooper();
+    }
+
+    @After
+    public void tearDown() {
+        ShadowLooper.unPauseMainLooper();
+    }
+
+    @Test
+    public void resultIsDeliveredToTheMountedPage() throws Exception {
+        PreloadPage page = (PreloadPage) mPageManager.goTo(
+                new PreloadPage.Factory(new CountDownLatch(0)), new NoAnimationFactory());
+        PostedTasks.await(1);
+
+        ShadowLooper.idleMainLooper();
+
+        assertEquals("data", page.mResult);
+    }
+
+    @Test
+    public void preloadIsCancelledWhenThePageIsPopped() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        PreloadPage page = (PreloadPage) mPageManager.goTo(new PreloadPage.Factory(release),
+                new NoAnimationFactory());
+        page.mStarted.await();
+
+        mPageManager.goBack(false);
+        release.countDown();
+        page.mFinished.await();
+        ShadowLooper.idleMainLooper();
+
+        assertTrue(page.mContext.isCancelled());
+        assertNull(page.mResult);
+        assertNull(page.mError);
+    }
+
+    public static class PreloadPage extends TestPage implements Preloadable<String> {
+        final CountDownLatch mStarted = new CountDownLatch(1);
+        final CountDownLatch mFinished = new CountDownLatch(1);
+        private final CountDownLatch mRelease;
+        volatile PreloadContext mContext;
+        String mResult;
+        Exception mError;
+
+        PreloadPage(CountDownLatch release) {
+            super("preload");
+            mRelease = release;
+        }
+
+        @Override
+        public String onPreload(PreloadContext context) throws Exception {
+            mContext = context;
+            mStarted.countDown();
+            try {
+                mRelease.await();
+                return "data";
+            }
+            finally {
+                mFinished.countDown();
+            }
+        }
+
+        @Override
+        public void onPreloaded(String result) {
+            mResult = result;
+        }
+
+        @Override
+        public void onPreloadFailed(Exception error) {
+            mError = error;
+        }
+
+        public static class Factory extends BasePageFactory {
+            private final transient CountDownLatch mRelease;
+
+            public Factory(CountDownLatch release) {
+                mRelease = release;
+            }
+
+            @Override
+            public Page getPage() {
+                return new PreloadPage(mRelease);
+            }
+        }
+    }
+}
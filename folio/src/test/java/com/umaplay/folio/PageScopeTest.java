@@ -0,0 +1,173 @@
+package com.umaplay.folio;
+
+import android.widget.FrameLayout;
+
+import com.umaplay.folio.animator.NoAnimationFactory;
+import com.umaplay.folio.leak.NoOpLeakWatchPolicy;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class PageScopeTest {
+
+    private PageManager mPageManager;
+    private Page mPage;
+    private RecordingCallback mCallback;
+
+    @Before
+    public void setUp() {
+        mPageManager = new PageManager(new FrameLayout(RuntimeEnvironment.application),
+                new PageStackDelegate() {
+                    @Override
+                    public void onStackEmpty() {
+                    }
+                }, NoOpLeakWatchPolicy.INSTANCE, null);
+        mPageManager.goTo(new TestPage.Factory("root"), new NoAnimationFactory());
+        mPage = mPageManager.goTo(new TestPage.Factory("a"), new NoAnimationFactory());
+        mCallback = new RecordingCallback();
+
+        //results are only delivered once the test lets the main looper run
+        ShadowLooper.pauseMainLooper();
+    }
+
+    @After
+    public void tearDown() {
+        ShadowLooper.unPauseMainLooper();
+    }
+
+    @Test
+    public void resultIsDeliveredWhileThePageIsAlive() throws Exception {
+        PageScope scope = mPage.scope();
+        scope.submit(result("a"), mCallback);
+        PostedTasks.await(1);
+
+        ShadowLooper.idleMainLooper();
+
+        assertEquals(1, mCallback.mResults.size());
+        assertEquals(0, scope.getActiveCount());
+    }
+
+    @Test
+    public void resultIsDroppedOnceThePageIsDestroyed() throws Exception {
+        PageScope scope = mPage.scope();
+        scope.submit(result("a"), mCallback);
+        PostedTasks.await(1);
+
+        mPageManager.goBack(false);
+        ShadowLooper.idleMainLooper();
+
+        assertTrue(mCallback.mResults.isEmpty());
+        assertEquals(1, scope.getDroppedCount());
+        assertEquals(0, scope.getCancelledCount());
+    }
+
+    @Test
+    public void runningTaskIsOnlyCountedAsCancelled() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(1);
+        PageScope scope = mPage.scope();
+        scope.submit(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                started.countDown();
+                try {
+                    new CountDownLatch(1).await();//until it is interrupted
+                    return "a";
+                }
+                finally {
+                    finished.countDown();
+                }
+            }
+        }, mCallback);
+        started.await();
+
+        mPageManager.goBack(false);
+        finished.await();
+        ShadowLooper.idleMainLooper();
+
+        assertTrue(mCallback.mResults.isEmpty());
+        assertTrue(mCallback.mErrors.isEmpty());
+        assertEquals(1, scope.getCancelledCount());
+        assertEquals(0, scope.getDroppedCount());
+    }
+
+    @Test
+    public void tasksAreParkedWhileThePageIsInvisible() throws Exception {
+        PageScope scope = mPage.scope();
+        scope.setPauseWhenInvisible(true);
+        mPageManager.goTo(new TestPage.Factory("b"), new NoAnimationFactory());
+
+        final AtomicBoolean ran = new AtomicBoolean();
+        scope.submit(new Callable<String>() {
+            @Override
+            public String call() {
+                ran.set(true);
+                return "a";
+            }
+        }, mCallback);
+
+        assertFalse(ran.get());
+        assertEquals(1, scope.getActiveCount());
+
+        mPageManager.goBack(false);
+        PostedTasks.await(1);
+        ShadowLooper.idleMainLooper();
+
+        assertTrue(ran.get());
+        assertEquals(1, mCallback.mResults.size());
+    }
+
+    @Test
+    public void taskSubmittedAfterDestroyIsCancelled() {
+        PageScope scope = mPage.scope();
+        mPageManager.goBack(false);
+
+        scope.submit(result("a"), mCallback);
+
+        assertTrue(scope.isDestroyed());
+        assertEquals(1, scope.getCancelledCount());
+        assertEquals(0, scope.getActiveCount());
+    }
+
+    private static Callable<String> result(final String result) {
+        return new Callable<String>() {
+            @Override
+            public String call() {
+                return result;
+            }
+        };
+    }
+
+    private static class RecordingCallback implements PageScope.Callback<String> {
+        final List<String> mResults = new ArrayList<>();
+        final List<Exception> mErrors = new ArrayList<>();
+
+        @Override
+        public void onResult(String result) {
+            mResults.add(result);
+        }
+
+        @Override
+        public void onError(Exception error) {
+            mErrors.add(error);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.umaplay.folio;
+
+import android.os.Bundle;
+import android.widget.FrameLayout;
+
+import com.umaplay.folio.animator.NoAnimationFactory;
+import com.umaplay.folio.leak.NoOpLeakWatchPolicy;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class PageStackTest {
+
+    private static final PageStackDelegate DELEGATE = new PageStackDelegate() {
+        @Override
+        public void onStackEmpty() {
+        }
+    };
+
+    @Test
+    public void reservedIdsAreNotAssignedAgain() {
+        PageFactory restored = new TestPage.Factory("a");
+        PageStack.assignId(restored);
+        String id = restored.getId();
+
+        PageStack.reserveId(Long.toString(Long.parseLong(id, Character.MAX_RADIX) + 10,
+                Character.MAX_RADIX));
+        PageFactory created = new TestPage.Factory("b");
+        PageStack.assignId(created);
+
+        assertEquals(Long.parseLong(id, Character.MAX_RADIX) + 11,
+                Long.parseLong(created.getId(), Character.MAX_RADIX));
+    }
+
+    @Test
+    public void uuidIdsAreIgnored() {
+        PageFactory before = new TestPage.Factory("a");
+        PageStack.assignId(before);
+
+        PageStack.reserveId(UUID.randomUUID().toString());
+        PageFactory after = new TestPage.Factory("b");
+        PageStack.assignId(after);
+
+        assertEquals(Long.parseLong(before.getId(), Character.MAX_RADIX) + 1,
+                Long.parseLong(after.getId(), Character.MAX_RADIX));
+    }
+
+    @Test
+    public void sameFactoryGetsItsOwnEntryId() {
+        PageStack stack = new PageStack();
+        PageFactory factory = new TestPage.Factory("a");
+
+        String first = stack.newEntryId(factory);
+        stack.push(factory, first, null);
+        String second = stack.newEntryId(factory);
+        stack.push(factory, second, null);
+
+        assertEquals(factory.getId(), first);
+        assertNotEquals(first, second);
+        assertEquals(0, stack.indexOf(first));
+        assertEquals(1, stack.indexOf(second));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void duplicateEntryIdThrows() {
+        PageStack stack = new PageStack();
+        PageFactory factory = new TestPage.Factory("a");
+        stack.push(factory, "a", null);
+        stack.push(factory, "a", null);
+    }
+
+    @Test
+    public void removeReindexesTheEntriesAbove() {
+        PageStack stack = new PageStack();
+        for (String id : new String[]{"a", "b", "c"}) {
+            stack.push(new TestPage.Factory(id), id, null);
+        }
+
+        stack.remove(0);
+
+        assertNull(stack.findById("a"));
+        assertEquals(0, stack.indexOf("b"));
+        assertEquals(1, stack.indexOf("c"));
+        assertSame(stack.peek(), stack.findById("c"));
+        assertEquals(2, stack.size());
+    }
+
+    @Test
+    public void sameFactoryPushedTwiceIsRestored() {
+        PageManager pageManager = newPageManager(null);
+        PageFactory factory = new TestPage.Factory("a");
+        String bottomId = pageManager.goTo(factory, new NoAnimationFactory()).getId();
+        String topId = pageManager.goTo(factory, new NoAnimationFactory()).getId();
+        assertNotEquals(bottomId, topId);
+
+        Bundle state = new Bundle();
+        pageManager.onSaveInstanceState(state);
+        PageManager restored = newPageManager(state);
+
+        assertEquals(2, restored.size());
+        assertEquals(topId, restored.peek().getId());
+        restored.goBack(false);
+        assertEquals(bottomId, restored.peek().getId());
+    }
+
+    private static PageManager newPageManager(Bundle savedInstanceState) {
+        return new PageManager(new FrameLayout(RuntimeEnvironment.application), DELEGATE,
+                NoOpLeakWatchPolicy.INSTANCE, savedInstanceState);
+    }
+}
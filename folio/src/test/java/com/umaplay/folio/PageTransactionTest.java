@@ -0,0 +1,128 @@
+package com.umaplay.folio;
+
+import android.widget.FrameLayout;
+
+import com.umaplay.folio.animator.NoAnimationFactory;
+import com.umaplay.folio.animator.PageAnimatorFactory;
+import com.umaplay.folio.leak.NoOpLeakWatchPolicy;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class PageTransactionTest {
+
+    private PageManager mPageManager;
+    private int mEmptyCount;
+
+    @Before
+    public void setUp() {
+        mPageManager = new PageManager(new FrameLayout(RuntimeEnvironment.application),
+                new PageStackDelegate() {
+                    @Override
+                    public void onStackEmpty() {
+                        mEmptyCount++;
+                    }
+                }, NoOpLeakWatchPolicy.INSTANCE, null);
+    }
+
+    @Test
+    public void pushesAreAppliedTogether() {
+        mPageManager.beginTransaction()
+                .push(new TestPage.Factory("a"))
+                .push(new TestPage.Factory("b"))
+                .commit();
+
+        assertEquals(2, mPageManager.size());
+        assertEquals("b", name(mPageManager.peek()));
+        assertTrue(mPageManager.peek().isMounted());
+    }
+
+    @Test
+    public void popRemovesPagesPushedInTheTransactionFirst() {
+        goTo("a");
+
+        mPageManager.beginTransaction()
+                .push(new TestPage.Factory("b"))
+                .pop()
+                .commit();
+
+        assertEquals(1, mPageManager.size());
+        assertEquals("a", name(mPageManager.peek()));
+    }
+
+    @Test
+    public void popAllReplacesTheStack() {
+        goTo("a");
+        goTo("b");
+
+        mPageManager.beginTransaction().popAll().push(new TestPage.Factory("c")).commit();
+
+        assertEquals(1, mPageManager.size());
+        assertEquals("c", name(mPageManager.peek()));
+    }
+
+    @Test
+    public void popAfterPopAllIsClamped() {
+        goTo("a");
+        goTo("b");
+        goTo("c");
+
+        mPageManager.beginTransaction()
+                .popAll()
+                .pop(2)
+                .push(new TestPage.Factory("d"))
+                .commit();
+
+        assertEquals(1, mPageManager.size());
+        assertEquals("d", name(mPageManager.peek()));
+    }
+
+    @Test
+    public void popsAcrossExistingPages() {
+        goTo("a");
+        goTo("b");
+        goTo("c");
+
+        mPageManager.beginTransaction().pop(2).commit();
+
+        assertEquals(1, mPageManager.size());
+        assertEquals("a", name(mPageManager.peek()));
+        assertEquals(0, mEmptyCount);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void commitTwiceThrows() {
+        PageTransaction transaction = mPageManager.beginTransaction()
+                .push(new TestPage.Factory("a"));
+
+        transaction.commit();
+        transaction.commit();
+    }
+
+    @Test
+    public void onlyNoAnimationFactoryItselfIsInstant() {
+        PageAnimatorFactory subclass = new NoAnimationFactory() {
+        };
+
+        assertTrue(PageManager.isInstant(new NoAnimationFactory()));
+        assertFalse(PageManager.isInstant(subclass));
+    }
+
+    private void goTo(String name) {
+        mPageManager.goTo(new TestPage.Factory(name));
+    }
+
+    private static String name(Page page) {
+        return ((TestPage) page).getName();
+    }
+}
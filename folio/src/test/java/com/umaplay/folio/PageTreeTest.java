@@ -0,0 +1,140 @@
+package com.umaplay.folio;
+
+import android.content.Context;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import com.umaplay.folio.animator.NoAnimationFactory;
+import com.umaplay.folio.leak.NoOpLeakWatchPolicy;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class PageTreeTest {
+
+    private NestingPage mPage;
+    private Page mShownChild;
+    private Page mGoneChild;
+    private Page mDetachedChild;
+
+    @Before
+    public void setUp() {
+        PageManager pageManager = new PageManager(new FrameLayout(RuntimeEnvironment.application),
+                new PageStackDelegate() {
+                    @Override
+                    public void onStackEmpty() {
+                    }
+                }, NoOpLeakWatchPolicy.INSTANCE, null);
+        mPage = (NestingPage) pageManager.goTo(new NestingPage.Factory(),
+                new NoAnimationFactory());
+
+        mShownChild = nest(mPage.mShown, "shown");
+        mGoneChild = nest(mPage.mGone, "gone");
+        mDetachedChild = nest(mPage.mDetached, "detached");
+
+        PageTree.dispatchLostFocus(mPage);
+        PageTree.dispatchInvisible(mPage);
+    }
+
+    @Test
+    public void goneAndDetachedContainersAreSkipped() {
+        mPage.mGoneParent.setVisibility(View.GONE);
+        ((ViewGroup) mPage.getView()).removeView(mPage.mDetached);
+
+        PageTree.dispatchVisible(mPage);
+        PageTree.dispatchFocus(mPage);
+
+        assertTrue(mShownChild.isVisible());
+        assertTrue(mShownChild.hasFocus());
+        assertFalse(mGoneChild.isVisible());
+        assertFalse(mGoneChild.hasFocus());
+        assertFalse(mDetachedChild.isVisible());
+        assertFalse(mDetachedChild.hasFocus());
+    }
+
+    @Test
+    public void refreshStartsAContainerWhichIsShownAgain() {
+        mPage.mGoneParent.setVisibility(View.GONE);
+        PageTree.dispatchVisible(mPage);
+        PageTree.dispatchFocus(mPage);
+
+        mPage.mGoneParent.setVisibility(View.VISIBLE);
+        mPage.refreshNestedPageManagers();
+
+        assertTrue(mGoneChild.isVisible());
+        assertTrue(mGoneChild.hasFocus());
+    }
+
+    @Test
+    public void refreshStopsAContainerWhichIsHidden() {
+        PageTree.dispatchVisible(mPage);
+        PageTree.dispatchFocus(mPage);
+
+        mPage.mGoneParent.setVisibility(View.GONE);
+        mPage.refreshNestedPageManagers();
+
+        assertFalse(mGoneChild.isVisible());
+        assertFalse(mGoneChild.hasFocus());
+        assertTrue(mShownChild.isVisible());
+    }
+
+    private Page nest(ViewGroup container, String name) {
+        return mPage.getNestedPageManager(container).goTo(new TestPage.Factory(name),
+                new NoAnimationFactory());
+    }
+
+    /**
+     * A Page with three containers for nested PageManagers, one of them inside a parent which
+     * the tests hide
+     */
+    public static class NestingPage extends TestPage {
+        FrameLayout mShown;
+        FrameLayout mGoneParent;
+        FrameLayout mGone;
+        FrameLayout mDetached;
+
+        NestingPage() {
+            super("nesting");
+        }
+
+        @Override
+        public View onCreateView(Context context, ViewGroup container) {
+            FrameLayout view = new FrameLayout(context);
+            mShown = container(context, 1);
+            mGoneParent = new FrameLayout(context);
+            mGone = container(context, 2);
+            mDetached = container(context, 3);
+
+            view.addView(mShown);
+            mGoneParent.addView(mGone);
+            view.addView(mGoneParent);
+            view.addView(mDetached);
+
+            return view;
+        }
+
+        private static FrameLayout container(Context context, int id) {
+            FrameLayout container = new FrameLayout(context);
+            container.setId(id);
+
+            return container;
+        }
+
+        public static class Factory extends BasePageFactory {
+            @Override
+            public Page getPage() {
+                return new NestingPage();
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.umaplay.folio;
+
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.util.Scheduler;
+
+/**
+ * Waits for work on the background executor to post its results to the paused main looper
+ */
+final class PostedTasks {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private PostedTasks() {
+    }
+
+    static void await(int count) throws InterruptedException {
+        Scheduler scheduler = ShadowLooper.getShadowMainLooper().getScheduler();
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (scheduler.size() < count) {
+            if (System.currentTimeMillis() > deadline)
+                throw new AssertionError("Timed out waiting for " + count + " posted tasks");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.umaplay.folio;
+
+import android.graphics.Bitmap;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class SnapshotCacheTest {
+
+    private static final long SNAPSHOT_BYTES = 50 * 50 * 4;//a 100x100 View at half scale
+
+    private SnapshotCache mCache;
+
+    @Before
+    public void setUp() {
+        mCache = new SnapshotCache();
+    }
+
+    @Test
+    public void nothingIsCapturedWithoutALimit() {
+        mCache.capture("a", view(100, 100));
+
+        assertNull(mCache.take("a"));
+        assertEquals(0, mCache.size());
+    }
+
+    @Test
+    public void removedSnapshotIsReusedForTheSameSize() {
+        mCache.setLimit(SNAPSHOT_BYTES * 2);
+        mCache.capture("a", view(100, 100));
+        Bitmap first = mCache.take("a");
+        mCache.offer(first);
+
+        mCache.capture("b", view(100, 100));
+
+        assertSame(first, mCache.take("b"));
+    }
+
+    @Test
+    public void spareOfAnotherSizeIsDropped() {
+        mCache.setLimit(SNAPSHOT_BYTES * 2);
+        mCache.capture("a", view(100, 100));
+        mCache.remove("a");
+        assertEquals(SNAPSHOT_BYTES, mCache.size());//the spare
+
+        mCache.capture("b", view(100, 60));
+
+        assertEquals(50 * 30 * 4, mCache.size());
+    }
+
+    @Test
+    public void leastRecentlyUsedSnapshotIsEvictedBeforeAllocating() {
+        mCache.setLimit(SNAPSHOT_BYTES);
+        mCache.capture("a", view(100, 100));
+        Bitmap first = mCache.take("a");
+        mCache.capture("a", view(100, 100));
+
+        mCache.capture("b", view(100, 100));
+
+        assertNull(mCache.take("a"));
+        Bitmap second = mCache.take("b");
+        assertNotNull(second);
+        assertNotSame(first, second);
+        assertEquals(0, mCache.size());
+    }
+
+    private static View view(int width, int height) {
+        View view = new FrameLayout(RuntimeEnvironment.application);
+        view.layout(0, 0, width, height);
+
+        return view;
+    }
+}
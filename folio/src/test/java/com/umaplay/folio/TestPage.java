@@ -0,0 +1,40 @@
+package com.umaplay.folio;
+
+import android.content.Context;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+/**
+ * A Page with an empty View, created by a Factory with a name so tests can tell Pages apart
+ */
+public class TestPage extends Page {
+
+    private final String mName;
+
+    TestPage(String name) {
+        mName = name;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    @Override
+    public View onCreateView(Context context, ViewGroup container) {
+        return new FrameLayout(context);
+    }
+
+    public static class Factory extends BasePageFactory {
+        private final String mName;
+
+        public Factory(String name) {
+            mName = name;
+        }
+
+        @Override
+        public Page getPage() {
+            return new TestPage(mName);
+        }
+    }
+}
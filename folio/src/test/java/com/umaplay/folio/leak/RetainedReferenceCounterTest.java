@@ -0,0 +1,75 @@
+package com.umaplay.folio.leak;
+
+import com.umaplay.folio.BuildConfig;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class RetainedReferenceCounterTest {
+
+    @Test
+    public void reachableReferenceIsRetainedAfterTheDelay() {
+        RetainedReferenceCounter counter = new RetainedReferenceCounter(0);
+        Object reference = new Object();
+
+        counter.watch(reference);
+
+        assertEquals(1, counter.getRetainedCount());
+        assertEquals(1, counter.getWatchedCount());
+        assertEquals(0, counter.getCollectedCount());
+    }
+
+    @Test
+    public void referenceIsNotRetainedBeforeTheDelay() {
+        RetainedReferenceCounter counter = new RetainedReferenceCounter(60000);
+        Object reference = new Object();
+
+        counter.watch(reference);
+
+        assertEquals(0, counter.getRetainedCount());
+    }
+
+    @Test
+    public void retainedReferencesAreCountedByType() {
+        RetainedReferenceCounter counter = new RetainedReferenceCounter(0);
+        String text = "text";
+        StringBuilder builder = new StringBuilder();
+
+        counter.watch(text);
+        counter.watch(builder);
+
+        assertEquals(1, counter.getRetainedCount(String.class));
+        assertEquals(2, counter.getRetainedCount(CharSequence.class));
+        assertEquals(2, counter.getRetainedCount());
+    }
+
+    @Test
+    public void collectedReferenceIsNoLongerRetained() throws InterruptedException {
+        RetainedReferenceCounter counter = new RetainedReferenceCounter(0);
+        counter.watch(new Object());
+
+        for (int i = 0; i < 20 && counter.getCollectedCount() == 0; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertEquals(1, counter.getCollectedCount());
+        assertEquals(0, counter.getRetainedCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeDelayThrows() {
+        new RetainedReferenceCounter(-1);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void nullReferenceThrows() {
+        new RetainedReferenceCounter(0).watch(null);
+    }
+}
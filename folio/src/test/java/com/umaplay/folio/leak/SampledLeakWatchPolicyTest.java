@@ -0,0 +1,91 @@
+package com.umaplay.folio.leak;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class SampledLeakWatchPolicyTest {
+
+    @Test
+    public void referencesOfEveryNthNavigationArePassedOn() {
+        RecordingPolicy delegate = new RecordingPolicy();
+        SampledLeakWatchPolicy policy = new SampledLeakWatchPolicy(delegate, 3);
+
+        for (int i = 0; i < 7; i++) {
+            policy.onNavigation();
+            policy.watch(i);
+        }
+
+        assertEquals(Arrays.<Object>asList(0, 3, 6), delegate.mWatched);
+        assertEquals(3, delegate.mNavigations);
+    }
+
+    @Test
+    public void viewsAndPagesOfANavigationAreSampledTogether() {
+        RecordingPolicy delegate = new RecordingPolicy();
+        SampledLeakWatchPolicy policy = new SampledLeakWatchPolicy(delegate, 2);
+
+        //like a PageManager, which unmounts the View before it destroys the Page
+        for (int i = 0; i < 4; i++) {
+            policy.onNavigation();
+            policy.watch("view" + i);
+            policy.watch("page" + i);
+        }
+
+        assertEquals(Arrays.<Object>asList("view0", "page0", "view2", "page2"),
+                delegate.mWatched);
+    }
+
+    @Test
+    public void referencesBeforeTheFirstNavigationAreWatched() {
+        RecordingPolicy delegate = new RecordingPolicy();
+        SampledLeakWatchPolicy policy = new SampledLeakWatchPolicy(delegate, 5);
+
+        policy.watch("a");
+        policy.watch("b");
+
+        assertEquals(Arrays.<Object>asList("a", "b"), delegate.mWatched);
+    }
+
+    @Test
+    public void rateOfOneWatchesEveryReference() {
+        RecordingPolicy delegate = new RecordingPolicy();
+        SampledLeakWatchPolicy policy = new SampledLeakWatchPolicy(delegate, 1);
+
+        policy.onNavigation();
+        policy.watch("a");
+        policy.onNavigation();
+        policy.watch("b");
+
+        assertEquals(Arrays.<Object>asList("a", "b"), delegate.mWatched);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rateBelowOneThrows() {
+        new SampledLeakWatchPolicy(new RecordingPolicy(), 0);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void nullDelegateThrows() {
+        new SampledLeakWatchPolicy(null, 1);
+    }
+
+    private static class RecordingPolicy implements LeakWatchPolicy {
+        final List<Object> mWatched = new ArrayList<>();
+        int mNavigations;
+
+        @Override
+        public void watch(Object reference) {
+            mWatched.add(reference);
+        }
+
+        @Override
+        public void onNavigation() {
+            mNavigations++;
+        }
+    }
+}